@@ -27,15 +27,43 @@ package chat.dim.crypto;
 
 import java.util.Map;
 
+import chat.dim.format.UTF8;
 import chat.dim.protocol.PublicKey;
 import chat.dim.protocol.SignKey;
 
 public abstract class BasePublicKey extends BaseAsymmetricKey implements PublicKey {
 
+    // algorithm + curve + key data, to identify this key in verification cache
+    private byte[] keyIdentifier = null;
+
     protected BasePublicKey(Map<String, Object> dictionary) {
         super(dictionary);
     }
 
+    protected byte[] getKeyIdentifier() {
+        byte[] identifier = keyIdentifier;
+        if (identifier == null) {
+            // same point on another curve is another key
+            String curve = getString("curve", "");
+            identifier = UTF8.encode(getAlgorithm() + "\n" + curve + "\n" + getString("data"));
+            keyIdentifier = identifier;
+        }
+        return identifier;
+    }
+
+    /**
+     *  Verify with the shared cache if enabled
+     *
+     * @param verifier - verify the signature when not cached
+     */
+    protected boolean verify(byte[] data, byte[] signature, VerificationCache.Verifier verifier) {
+        VerificationCache cache = VerificationCache.shared;
+        if (cache == null) {
+            return verifier.verify(data, signature);
+        }
+        return cache.verify(getKeyIdentifier(), data, signature, verifier);
+    }
+
     @Override
     public boolean matchSignKey(SignKey sKey) {
         return matchSignKey(sKey, this);
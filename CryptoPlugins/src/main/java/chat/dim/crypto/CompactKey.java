@@ -0,0 +1,201 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import chat.dim.format.Base64;
+import chat.dim.format.Hex;
+import chat.dim.format.RSAKeys;
+import chat.dim.protocol.AsymmetricAlgorithms;
+import chat.dim.protocol.PublicKey;
+import chat.dim.protocol.SymmetricKey;
+import chat.dim.protocol.TransportableData;
+import chat.dim.utils.CryptoUtils;
+
+/**
+ *  Compact Key
+ *  <p>
+ *      Keeps only the algorithm (and the curve for ECC) and the raw key bytes,
+ *      the key dictionary (PEM/Base64 view) and the key object
+ *      are built when {@link #toPublicKey()}/{@link #toSymmetricKey()} called.
+ *  </p>
+ *
+ *  <blockquote><pre>
+ *  raw data: RSA - X.509 (SubjectPublicKeyInfo); ECC - uncompressed point;
+ *            symmetric keys - password data
+ *  </pre></blockquote>
+ *
+ *  <p>
+ *      Used by {@link PublicKeyCache} as the cached value,
+ *      see it for the retained heap per key.
+ *  </p>
+ */
+public final class CompactKey {
+
+    private final String algorithm;
+    private final String curve;  // ECC only
+    private final byte[] data;
+
+    private CompactKey(String algorithm, String curve, byte[] data) {
+        super();
+        this.algorithm = algorithm;
+        this.curve = curve;
+        this.data = data;
+    }
+
+    public static CompactKey from(PublicKey key) {
+        String algorithm = key.getAlgorithm();
+        String curve = null;
+        if (key instanceof RSAPublicKey) {
+            if (!isRSA(algorithm)) {
+                algorithm = AsymmetricAlgorithms.RSA;
+            }
+        } else if (key instanceof ECCPublicKey) {
+            algorithm = AsymmetricAlgorithms.ECC;
+            curve = key.getString("curve", CryptoUtils.SECP256K1);
+        } else {
+            assert false : "public key not supported: " + key;
+            return null;
+        }
+        return create(algorithm, curve, key.getData());
+    }
+
+    public static CompactKey from(SymmetricKey key) {
+        return create(key.getAlgorithm(), null, key.getData());
+    }
+
+    private static CompactKey create(String algorithm, String curve, TransportableData ted) {
+        byte[] data = ted == null ? null : ted.getBytes();
+        if (algorithm == null || data == null) {
+            assert false : "key error: " + algorithm;
+            return null;
+        }
+        // share the algorithm string with other keys
+        return new CompactKey(algorithm.intern(), curve == null ? null : curve.intern(), data.clone());
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public String getCurve() {
+        return curve;
+    }
+
+    public byte[] getData() {
+        return data.clone();
+    }
+
+    /**
+     *  Length of the raw key bytes
+     */
+    public int getLength() {
+        return data.length;
+    }
+
+    /**
+     *  Build public key (RSA/ECC)
+     */
+    public PublicKey toPublicKey() {
+        Map<String, Object> info = new HashMap<>();
+        info.put("algorithm", algorithm);
+        if (isRSA(algorithm)) {
+            String pem = encodeRSAPublicKey(data);
+            if (pem == null) {
+                return null;
+            }
+            info.put("data", pem);
+            info.put("mode", "ECB");
+            boolean oaep = CryptoUtils.RSA_ECB_OAEP.equals(CryptoUtils.getRSACipherAlgorithm(algorithm));
+            info.put("padding", oaep ? "OAEP" : "PKCS1");
+            info.put("digest", "SHA256");
+        } else if (AsymmetricAlgorithms.ECC.equals(algorithm)) {
+            info.put("curve", curve == null ? CryptoUtils.SECP256K1 : curve);
+            info.put("data", Hex.encode(data));
+        } else {
+            assert false : "not a public key: " + algorithm;
+            return null;
+        }
+        return PublicKey.parse(info);
+    }
+
+    private static boolean isRSA(String algorithm) {
+        return AsymmetricAlgorithms.RSA.equals(algorithm)
+                || CryptoUtils.RSA_OAEP.equals(algorithm) || CryptoUtils.RSA_PSS.equals(algorithm)
+                || CryptoUtils.RSA_HYBRID.equals(algorithm);
+    }
+
+    private static String encodeRSAPublicKey(byte[] x509) {
+        try {
+            KeyFactory factory = KeyFactory.getInstance(AsymmetricAlgorithms.RSA);
+            return RSAKeys.encodePublicKey(factory.generatePublic(new X509EncodedKeySpec(x509)));
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     *  Build symmetric key (AES, ...)
+     */
+    public SymmetricKey toSymmetricKey() {
+        Map<String, Object> info = new HashMap<>();
+        info.put("algorithm", algorithm);
+        info.put("data", Base64.encode(data));
+        return SymmetricKey.parse(info);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        } else if (other instanceof CompactKey) {
+            CompactKey key = (CompactKey) other;
+            return algorithm.equals(key.algorithm) && Objects.equals(curve, key.curve)
+                    && Arrays.equals(data, key.data);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return (algorithm.hashCode() * 31 + Objects.hashCode(curve)) * 31 + Arrays.hashCode(data);
+    }
+
+    @Override
+    public String toString() {
+        return "<" + getClass().getSimpleName() + " algorithm=\"" + algorithm + "\" length=" + data.length + " />";
+    }
+
+}
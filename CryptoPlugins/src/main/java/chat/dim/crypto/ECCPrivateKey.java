@@ -30,7 +30,6 @@ import java.security.InvalidKeyException;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.security.Signature;
 import java.security.SignatureException;
 import java.security.interfaces.ECPrivateKey;
@@ -60,7 +59,11 @@ import chat.dim.utils.CryptoUtils;
 public final class ECCPrivateKey extends BasePrivateKey {
 
     private final ECPrivateKey privateKey;
-    private ECPublicKey publicKey;
+    private volatile ECPublicKey publicKey;
+
+    // derived from the keys when first used, then shared by all callers
+    private volatile TransportableData data = null;
+    private volatile PublicKey pubKey = null;
 
     public ECCPrivateKey(Map<String, Object> dictionary) {
         super(dictionary);
@@ -79,7 +82,7 @@ public final class ECCPrivateKey extends BasePrivateKey {
         // generate key pair
         KeyPairGenerator generator = CryptoUtils.getKeyPairGenerator(CryptoUtils.EC);
         ECGenParameterSpec spec = new ECGenParameterSpec(curveName);
-        generator.initialize(spec, new SecureRandom());
+        generator.initialize(spec, CryptoUtils.getSecureRandom());
         KeyPair keyPair = generator.generateKeyPair();
 
         // store private key in PKCS#8 format
@@ -110,43 +113,70 @@ public final class ECCPrivateKey extends BasePrivateKey {
 
     @Override
     public TransportableData getData() {
-        if (privateKey == null) {
-            throw new NullPointerException("ECC private key not found");
+        TransportableData ted = data;
+        if (ted == null) {
+            if (privateKey == null) {
+                throw new NullPointerException("ECC private key not found");
+            }
+            ted = PlainData.create(ECCKeys.getPointData(privateKey));
+            data = ted;
         }
-        byte[] data = ECCKeys.getPointData(privateKey);
-        return PlainData.create(data);
+        return ted;
     }
 
-    @Override
-    public PublicKey getPublicKey() {
-        if (publicKey == null) {
+    private ECPublicKey getECPublicKey() {
+        ECPublicKey key = publicKey;
+        if (key == null) {
             if (privateKey == null) {
                 throw new NullPointerException("private key not found");
             }
-            publicKey = ECCKeys.generatePublicKey(privateKey);
-            if (publicKey == null) {
+            key = ECCKeys.generatePublicKey(privateKey);
+            if (key == null) {
                 throw new NullPointerException("failed to get public key from private key");
             }
+            publicKey = key;
+        }
+        return key;
+    }
+
+    @Override
+    protected byte[] createKeyMaterial() {
+        // derive the point from the private key itself,
+        // the public key block in 'data' may not belong to it
+        ECPublicKey derived = ECCKeys.generatePublicKey(privateKey);
+        if (derived == null) {
+            // compare by signature
+            return null;
+        }
+        return ECCPublicKey.createPointMaterial(getAlgorithm(), getCurveName(), derived);
+    }
+
+    @Override
+    public PublicKey getPublicKey() {
+        PublicKey key = pubKey;
+        if (key == null) {
+            // store public key in X.509 format
+            String pem = ECCKeys.encodePublicKey(getECPublicKey());
+
+            Map<String, Object> keyInfo = new HashMap<>();
+            keyInfo.put("algorithm", getAlgorithm());    // AsymmetricAlgorithms.ECC
+            keyInfo.put("data", pem);
+            keyInfo.put("curve", getCurveName());        // secp256k1
+            keyInfo.put("digest", "SHA256");
+            key = new ECCPublicKey(keyInfo);
+            pubKey = key;
         }
-        // store public key in X.509 format
-        String pem = ECCKeys.encodePublicKey(publicKey);
-
-        Map<String, Object> keyInfo = new HashMap<>();
-        keyInfo.put("algorithm", getAlgorithm());    // AsymmetricAlgorithms.ECC
-        keyInfo.put("data", pem);
-        keyInfo.put("curve", getCurveName());        // secp256k1
-        keyInfo.put("digest", "SHA256");
-        return new ECCPublicKey(keyInfo);
+        return key;
     }
 
     @Override
     public byte[] sign(byte[] data) {
         try {
-            Signature signer = CryptoUtils.getSignature(CryptoUtils.ECDSA_SHA256);
-            signer.initSign(privateKey);
+            Signature signer = CryptoUtils.getSigner(CryptoUtils.ECDSA_SHA256, privateKey);
             signer.update(data);
             return signer.sign();
         } catch (NoSuchAlgorithmException | InvalidKeyException | SignatureException e) {
+            CryptoUtils.releaseSignature(CryptoUtils.ECDSA_SHA256);
             e.printStackTrace();
             return null;
         }
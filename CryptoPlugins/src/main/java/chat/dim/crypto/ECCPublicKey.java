@@ -25,6 +25,7 @@
  */
 package chat.dim.crypto;
 
+import java.math.BigInteger;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.Signature;
@@ -33,6 +34,8 @@ import java.security.interfaces.ECPublicKey;
 import java.util.Map;
 
 import chat.dim.ecc.ECCKeys;
+import chat.dim.format.Hex;
+import chat.dim.format.PEM;
 import chat.dim.format.PlainData;
 import chat.dim.protocol.TransportableData;
 import chat.dim.utils.CryptoUtils;
@@ -50,38 +53,139 @@ import chat.dim.utils.CryptoUtils;
  */
 public final class ECCPublicKey extends BasePublicKey {
 
-    private final ECPublicKey publicKey;
+    // decoded from 'data' when first used
+    private volatile ECPublicKey publicKey;
+
+    // point data, created when first used
+    private volatile TransportableData data;
 
     public ECCPublicKey(Map<String, Object> dictionary) {
         super(dictionary);
-        publicKey = getKey();
+        // lazy load, but reject malformed data now
+        checkKeyData(getString("data"));
+        publicKey = null;
+        data = null;
     }
 
-    private ECPublicKey getKey() {
-        String data = getString("data");
+    /**
+     *  Create key for a dictionary with the same 'data' and 'curve' as the
+     *  compact key (e.g. from the key cache), the key object will be built
+     *  from the point data when first used, without decoding the Hex again
+     *
+     * @param dictionary - key info
+     * @param compact    - raw key data (uncompressed point)
+     */
+    public ECCPublicKey(Map<String, Object> dictionary, CompactKey compact) {
+        super(dictionary);
+        publicKey = null;
+        data = PlainData.create(compact.getData());
+    }
+
+    // check hex point or PEM structure, without creating the key object
+    private static void checkKeyData(String data) {
         if (data == null) {
             throw new NullPointerException("ECC public key data not found");
         }
-        return (ECPublicKey) ECCKeys.decodePublicKey(data);
+        boolean ok;
+        try {
+            if (isHex(data)) {
+                // Hex format, uncompressed point only
+                byte[] point = Hex.decode(data);
+                ok = point != null && point.length == 65 && point[0] == 0x04;
+            } else {
+                byte[] der = PEM.decodePublicKeyData(data, CryptoUtils.EC);
+                ok = der != null && der.length > 0 && der[0] == 0x30;
+            }
+        } catch (RuntimeException e) {
+            // PEM format error, or Hex/Base64 error
+            throw new IllegalArgumentException("ECC public key data error: " + data, e);
+        }
+        if (!ok) {
+            throw new IllegalArgumentException("ECC public key data error: " + data);
+        }
+    }
+
+    private static boolean isHex(String data) {
+        int len = data.length();
+        return len == 66 || len == 130;
+    }
+
+    private ECPublicKey getKey() {
+        ECPublicKey key = publicKey;
+        if (key == null) {
+            TransportableData ted = data;
+            String data = getString("data");
+            java.security.PublicKey decoded;
+            if (data == null) {
+                throw new NullPointerException("ECC public key data not found");
+            } else if (ted != null && isHex(data)) {
+                // point data from the key cache, same curve as the Hex format
+                decoded = ECCKeys.decodePublicKey(ted.getBytes());
+            } else {
+                decoded = ECCKeys.decodePublicKey(data);
+            }
+            if (!(decoded instanceof ECPublicKey)) {
+                throw new IllegalArgumentException("ECC public key data error: " + data);
+            }
+            key = (ECPublicKey) decoded;
+            publicKey = key;
+        }
+        return key;
+    }
+
+    @Override
+    protected byte[] createKeyMaterial() {
+        ECPublicKey key;
+        try {
+            key = getKey();
+        } catch (IllegalArgumentException e) {
+            // key data error, compare by inner map
+            return null;
+        }
+        return createPointMaterial(getAlgorithm(), getCurveName(), key);
+    }
+
+    private String getCurveName() {
+        return getString("curve", CryptoUtils.SECP256K1);
+    }
+
+    // curve name, affine X and the parity of Y (same as the compressed point)
+    static byte[] createPointMaterial(String algorithm, String curve, ECPublicKey key) {
+        java.security.spec.ECPoint w = key.getW();
+        BigInteger parity = w.getAffineY().testBit(0) ? BigInteger.ONE : BigInteger.ZERO;
+        return createKeyMaterial(algorithm, curve, w.getAffineX(), parity);
     }
 
     @Override
     public TransportableData getData() {
-        if (publicKey == null) {
-            throw new NullPointerException("ECC public key not found");
+        TransportableData ted = data;
+        if (ted == null) {
+            ECPublicKey publicKey = getKey();
+            if (publicKey == null) {
+                throw new NullPointerException("ECC public key not found");
+            }
+            ted = PlainData.create(ECCKeys.getPointData(publicKey));
+            data = ted;
         }
-        byte[] data = ECCKeys.getPointData(publicKey);
-        return PlainData.create(data);
+        return ted;
     }
 
     @Override
     public boolean verify(byte[] data, byte[] signature) {
+        return verify(data, signature, this::verifySignature);
+    }
+
+    private boolean verifySignature(byte[] data, byte[] signature) {
         try {
-            Signature signer = CryptoUtils.getSignature(CryptoUtils.ECDSA_SHA256);
-            signer.initVerify(publicKey);
+            Signature signer = CryptoUtils.getVerifier(CryptoUtils.ECDSA_SHA256, getKey());
             signer.update(data);
             return signer.verify(signature);
         } catch (NoSuchAlgorithmException | InvalidKeyException | SignatureException e) {
+            CryptoUtils.releaseSignature(CryptoUtils.ECDSA_SHA256);
+            e.printStackTrace();
+            return false;
+        } catch (IllegalArgumentException e) {
+            // key data error
             e.printStackTrace();
             return false;
         }
@@ -0,0 +1,265 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.security.spec.RSAPrivateCrtKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import chat.dim.protocol.AsymmetricAlgorithms;
+import chat.dim.utils.CryptoUtils;
+
+/**
+ *  Parallel RSA Key Generator
+ *  <p>
+ *      The primes are searched by several workers at once, each worker
+ *      tests its own random window of candidates (sieved by small primes
+ *      before the probable-prime test), the first primes found win;
+ *      the calling thread works too, so it never waits on a busy executor.
+ *  </p>
+ *  <p>
+ *      The key pair is built by the JCA key factory (CRT form, e = 65537),
+ *      so it can be encoded by RSAKeys as the generated ones.
+ *  </p>
+ *
+ *  <blockquote><pre>
+ *  Usage:
+ *      registerRSAKeyGenerator(new ParallelRSAGenerator(executor, 4));
+ *  (or override 'CryptoPluginLoader.createRSAKeyGenerator()')
+ *  </pre></blockquote>
+ */
+public class ParallelRSAGenerator {
+
+    public static final BigInteger PUBLIC_EXPONENT = RSAKeyGenParameterSpec.F4;  // 65537
+
+    // same as BigInteger.probablePrime()
+    private static final int CERTAINTY = 100;
+
+    // candidates tested from one random start
+    private static final int WINDOW_SIZE = 1 << 16;
+
+    private static final int[] SMALL_PRIMES = getSmallPrimes(2000);
+
+    private static final int EXPONENT = PUBLIC_EXPONENT.intValue();
+
+    private final Executor executor;
+    private final int parallelism;
+
+    public ParallelRSAGenerator(Executor executor, int parallelism) {
+        super();
+        assert parallelism > 0 : "parallelism error: " + parallelism;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    public ParallelRSAGenerator(Executor executor) {
+        this(executor, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     *  Generate RSA key pair
+     *
+     * @param sizeInBits - modulus size: 1024, 2048, 3072, 4096
+     * @return key pair, null on error
+     */
+    public KeyPair generateKeyPair(int sizeInBits) throws NoSuchAlgorithmException {
+        int pBits = (sizeInBits + 1) / 2;
+        int qBits = sizeInBits - pBits;
+        BigInteger p, q, n, lcm, d;
+        BigInteger p1, q1;
+        while (true) {
+            if (pBits == qBits) {
+                List<BigInteger> primes = findPrimes(pBits, 2);
+                p = primes.get(0);
+                q = primes.get(1);
+            } else {
+                p = findPrimes(pBits, 1).get(0);
+                q = findPrimes(qBits, 1).get(0);
+            }
+            if (p.compareTo(q) < 0) {
+                BigInteger tmp = p;
+                p = q;
+                q = tmp;
+            }
+            // |p - q| > 2^(nlen/2 - 100), FIPS 186-4
+            if (p.subtract(q).bitLength() <= pBits - 100) {
+                continue;
+            }
+            n = p.multiply(q);
+            if (n.bitLength() != sizeInBits) {
+                continue;
+            }
+            p1 = p.subtract(BigInteger.ONE);
+            q1 = q.subtract(BigInteger.ONE);
+            lcm = p1.divide(p1.gcd(q1)).multiply(q1);
+            d = PUBLIC_EXPONENT.modInverse(lcm);
+            // d > 2^(nlen/2), FIPS 186-4
+            if (d.bitLength() <= qBits) {
+                continue;
+            }
+            break;
+        }
+        BigInteger dP = d.mod(p1);
+        BigInteger dQ = d.mod(q1);
+        BigInteger qInv = q.modInverse(p);
+        KeyFactory factory = CryptoUtils.getKeyFactory(AsymmetricAlgorithms.RSA);
+        try {
+            PublicKey publicKey = factory.generatePublic(new RSAPublicKeySpec(n, PUBLIC_EXPONENT));
+            PrivateKey privateKey = factory.generatePrivate(new RSAPrivateCrtKeySpec(n, PUBLIC_EXPONENT, d,
+                    p, q, dP, dQ, qInv));
+            return new KeyPair(publicKey, privateKey);
+        } catch (InvalidKeySpecException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private List<BigInteger> findPrimes(int bits, int count) {
+        Search search = new Search(bits, count);
+        for (int i = 1; i < parallelism; ++i) {
+            executor.execute(search);
+        }
+        // calling thread works till enough primes found
+        search.run();
+        return search.getPrimes();
+    }
+
+    // one search shared by all workers
+    private static final class Search implements Runnable {
+
+        private final int bits;
+        private final int count;
+
+        private final List<BigInteger> primes = new ArrayList<>();
+        private volatile boolean done = false;
+
+        Search(int bits, int count) {
+            this.bits = bits;
+            this.count = count;
+        }
+
+        List<BigInteger> getPrimes() {
+            synchronized (primes) {
+                return new ArrayList<>(primes);
+            }
+        }
+
+        private void add(BigInteger prime) {
+            synchronized (primes) {
+                if (done || primes.contains(prime)) {
+                    return;
+                }
+                primes.add(prime);
+                done = primes.size() >= count;
+            }
+        }
+
+        @Override
+        public void run() {
+            SecureRandom random = CryptoUtils.getSecureRandom();
+            BigInteger prime;
+            while (!done) {
+                prime = searchWindow(random);
+                if (prime != null) {
+                    add(prime);
+                }
+            }
+        }
+
+        private BigInteger searchWindow(SecureRandom random) {
+            // top two bits set, so the product of two primes has full size
+            BigInteger start = new BigInteger(bits, random).setBit(bits - 1).setBit(bits - 2).setBit(0);
+            int[] residues = new int[SMALL_PRIMES.length];
+            for (int i = 0; i < SMALL_PRIMES.length; ++i) {
+                residues[i] = start.mod(BigInteger.valueOf(SMALL_PRIMES[i])).intValue();
+            }
+            int residue = start.mod(PUBLIC_EXPONENT).intValue();
+            BigInteger candidate;
+            for (int delta = 0; delta < WINDOW_SIZE; delta += 2) {
+                if (done) {
+                    return null;
+                }
+                if (!passSieve(residues, delta)) {
+                    continue;
+                }
+                // gcd(e, p - 1) must be 1
+                if ((residue + delta) % EXPONENT == 1) {
+                    continue;
+                }
+                candidate = start.add(BigInteger.valueOf(delta));
+                if (candidate.bitLength() != bits) {
+                    // overflowed, try another start
+                    return null;
+                }
+                if (candidate.isProbablePrime(CERTAINTY)) {
+                    return candidate;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static boolean passSieve(int[] residues, int delta) {
+        for (int i = 0; i < SMALL_PRIMES.length; ++i) {
+            if ((residues[i] + delta) % SMALL_PRIMES[i] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // odd primes below the limit
+    private static int[] getSmallPrimes(int limit) {
+        boolean[] composite = new boolean[limit];
+        List<Integer> primes = new ArrayList<>();
+        for (int i = 3; i < limit; i += 2) {
+            if (composite[i]) {
+                continue;
+            }
+            primes.add(i);
+            for (int j = i * i; j < limit; j += i * 2) {
+                composite[j] = true;
+            }
+        }
+        int[] array = new int[primes.size()];
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = primes.get(i);
+        }
+        return array;
+    }
+
+}
@@ -0,0 +1,168 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import chat.dim.utils.LRUCache;
+
+/**
+ *  Cache for parsed public keys
+ *
+ *  <p>
+ *      The same contact's key is parsed again for every meta/visa check,
+ *      so the decoded key data is cached as {@link CompactKey},
+ *      indexed by the digest of 'algorithm' + 'curve' + 'data',
+ *      and evicted by total length of the raw key bytes.
+ *      Neither the dictionary nor the JCA key object is kept in the cache,
+ *      the key factory wraps each caller's dictionary in a new key object
+ *      around the compact key, instead of decoding the key data string again (except ECC keys in PEM format).
+ *  </p>
+ *
+ *  <blockquote><pre>
+ *  Retained heap per cached key, heap delta of 10,000 keys after GC
+ *  (JDK 17, 64-bit, compressed oops; same way as 'CryptoRSATest.testPublicKeyCacheHeap'):
+ *      RSA-1024 - 340 bytes (dictionary + decoded key: 1,845 bytes)
+ *      RSA-2048 - 470 bytes (dictionary + decoded key: 2,670 bytes)
+ *      ECC      - 245 bytes (dictionary + decoded key: 1,820 bytes)
+ *
+ *  Usage:
+ *      PublicKeyCache.shared = new PublicKeyCache(256 * 1024);  // ~900 RSA-2048 keys
+ *  </pre></blockquote>
+ */
+public class PublicKeyCache {
+
+    /**
+     *  Shared cache for public key factories, null means disabled
+     */
+    public static PublicKeyCache shared = null;
+
+    private final LRUCache<ByteBuffer, CompactKey> keys;
+
+    /**
+     *  Create public key cache
+     *
+     * @param capacity - max total length of raw key bytes
+     */
+    public PublicKeyCache(long capacity) {
+        super();
+        keys = new LRUCache<>(capacity, 0, (index, key) -> key.getLength(), null);
+    }
+
+    // one engine per thread
+    private static final ThreadLocal<MessageDigest> engines = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    // digest of key info, without keeping the data string
+    private static ByteBuffer getIndex(Map<String, Object> key) {
+        Object algorithm = key.get("algorithm");
+        Object data = key.get("data");
+        Object curve = key.get("curve");
+        if (curve != null && !(curve instanceof String)) {
+            // unknown curve format, don't share it
+            return null;
+        }
+        if (!(algorithm instanceof String) || !(data instanceof String)) {
+            return null;
+        }
+        MessageDigest md = engines.get();
+        md.reset();
+        update(md, (String) algorithm);
+        update(md, (String) curve);
+        update(md, (String) data);
+        return ByteBuffer.wrap(md.digest());
+    }
+
+    // length prefixed, so the fields cannot be shifted into each other
+    private static void update(MessageDigest md, String text) {
+        if (text == null) {
+            md.update((byte) 0xFF);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length;
+        md.update((byte) (length >>> 24));
+        md.update((byte) (length >>> 16));
+        md.update((byte) (length >>> 8));
+        md.update((byte) length);
+        md.update(bytes);
+    }
+
+    public CompactKey get(Map<String, Object> key) {
+        ByteBuffer index = getIndex(key);
+        return index == null ? null : keys.get(index);
+    }
+
+    public void put(Map<String, Object> key, CompactKey value) {
+        ByteBuffer index = getIndex(key);
+        if (index != null && value != null) {
+            keys.put(index, value);
+        }
+    }
+
+    public void clear() {
+        keys.clear();
+    }
+
+    //
+    //  Statistics
+    //
+
+    public int size() {
+        return keys.size();
+    }
+
+    public long getWeight() {
+        return keys.getWeight();
+    }
+
+    public long getHitCount() {
+        return keys.getHitCount();
+    }
+
+    public long getMissCount() {
+        return keys.getMissCount();
+    }
+
+    public long getEvictionCount() {
+        return keys.getEvictionCount();
+    }
+
+    @Override
+    public String toString() {
+        return keys.toString();
+    }
+
+}
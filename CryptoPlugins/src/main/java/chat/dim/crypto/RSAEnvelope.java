@@ -0,0 +1,241 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+
+import chat.dim.utils.CryptoUtils;
+
+/**
+ *  RSA Envelope
+ *  <p>
+ *      A random AES-256 key is wrapped with RSA-OAEP, and the payload is
+ *      encrypted by AES-GCM with that key, so any size of payload costs
+ *      only one RSA operation.
+ *  </p>
+ *
+ *  <blockquote><pre>
+ *  Format:
+ *      +-------------------------+-----------+----------------------+
+ *      | wrapped key (keySize)   | nonce(12) | body + tag(16)       |
+ *      +-------------------------+-----------+----------------------+
+ *      (the wrapped key is the AAD of the body)
+ *  </pre></blockquote>
+ */
+final class RSAEnvelope {
+    private RSAEnvelope() {
+        throw new AssertionError("Utility class cannot be instantiated");
+    }
+
+    static final String AES_GCM_NO_PADDING = "AES/GCM/NoPadding";
+
+    static final int CONTENT_KEY_SIZE = 32;
+    static final int NONCE_SIZE = 12;
+    static final int TAG_SIZE = 16;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     *  Get extra length of the envelope
+     *
+     * @param keySize - RSA modulus length in bytes
+     */
+    static int getOverhead(int keySize) {
+        return keySize + NONCE_SIZE + TAG_SIZE;
+    }
+
+    //
+    //  Data
+    //
+
+    static byte[] seal(java.security.interfaces.RSAPublicKey key, byte[] plaintext) throws GeneralSecurityException {
+        byte[] contentKey = randomBytes(CONTENT_KEY_SIZE);
+        byte[] nonce = randomBytes(NONCE_SIZE);
+        byte[] wrapped = wrap(key, contentKey);
+        Cipher cipher = newCipher(Cipher.ENCRYPT_MODE, contentKey, nonce, wrapped);
+        int pos = wrapped.length + NONCE_SIZE;
+        byte[] out = new byte[pos + cipher.getOutputSize(plaintext.length)];
+        System.arraycopy(wrapped, 0, out, 0, wrapped.length);
+        System.arraycopy(nonce, 0, out, wrapped.length, NONCE_SIZE);
+        cipher.doFinal(plaintext, 0, plaintext.length, out, pos);
+        return out;
+    }
+
+    static byte[] open(java.security.interfaces.RSAPrivateKey key, int keySize, byte[] ciphertext)
+            throws GeneralSecurityException {
+        if (ciphertext.length < getOverhead(keySize)) {
+            throw new InvalidKeyException("RSA envelope length error: " + ciphertext.length);
+        }
+        byte[] wrapped = new byte[keySize];
+        byte[] nonce = new byte[NONCE_SIZE];
+        System.arraycopy(ciphertext, 0, wrapped, 0, keySize);
+        System.arraycopy(ciphertext, keySize, nonce, 0, NONCE_SIZE);
+        byte[] contentKey = unwrap(key, wrapped);
+        Cipher cipher = newCipher(Cipher.DECRYPT_MODE, contentKey, nonce, wrapped);
+        int pos = keySize + NONCE_SIZE;
+        return cipher.doFinal(ciphertext, pos, ciphertext.length - pos);
+    }
+
+    //
+    //  Streams
+    //
+
+    /**
+     *  Encrypt data from input stream to output stream
+     *
+     * @return count of bytes written
+     */
+    static long seal(java.security.interfaces.RSAPublicKey key, InputStream in, OutputStream out)
+            throws IOException, GeneralSecurityException {
+        byte[] contentKey = randomBytes(CONTENT_KEY_SIZE);
+        byte[] nonce = randomBytes(NONCE_SIZE);
+        byte[] wrapped = wrap(key, contentKey);
+        Cipher cipher = newCipher(Cipher.ENCRYPT_MODE, contentKey, nonce, wrapped);
+        out.write(wrapped);
+        out.write(nonce);
+        return wrapped.length + NONCE_SIZE + process(cipher, in, out);
+    }
+
+    /**
+     *  Decrypt data from input stream to output stream, buffering the body
+     *  (the whole body is read into memory and decrypted in one call,
+     *   so nothing is written to the output before the tag is checked,
+     *   whichever provider is used; some providers, e.g. BouncyCastle,
+     *   would release unauthenticated plaintext from 'Cipher.update()')
+     *
+     * @return count of bytes written
+     */
+    static long openBuffered(java.security.interfaces.RSAPrivateKey key, int keySize, InputStream in, OutputStream out)
+            throws IOException, GeneralSecurityException {
+        byte[] wrapped = new byte[keySize];
+        byte[] nonce = new byte[NONCE_SIZE];
+        if (!readFully(in, wrapped) || !readFully(in, nonce)) {
+            throw new InvalidKeyException("RSA envelope header error");
+        }
+        byte[] contentKey = unwrap(key, wrapped);
+        Cipher cipher = newCipher(Cipher.DECRYPT_MODE, contentKey, nonce, wrapped);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int len;
+        while ((len = in.read(buffer)) >= 0) {
+            body.write(buffer, 0, len);
+        }
+        byte[] plaintext = cipher.doFinal(body.toByteArray());
+        out.write(plaintext);
+        return plaintext.length;
+    }
+
+    //
+    //  Private
+    //
+
+    private static byte[] wrap(java.security.interfaces.RSAPublicKey key, byte[] contentKey)
+            throws GeneralSecurityException {
+        try {
+            Cipher cipher = CryptoUtils.getCipher(CryptoUtils.RSA_ECB_OAEP, Cipher.ENCRYPT_MODE, key);
+            return cipher.doFinal(contentKey);
+        } catch (GeneralSecurityException e) {
+            // only the RSA engine is shared by this thread
+            CryptoUtils.releaseCipher(CryptoUtils.RSA_ECB_OAEP);
+            throw e;
+        }
+    }
+
+    private static byte[] unwrap(java.security.interfaces.RSAPrivateKey key, byte[] wrapped)
+            throws GeneralSecurityException {
+        byte[] contentKey;
+        try {
+            Cipher cipher = CryptoUtils.getCipher(CryptoUtils.RSA_ECB_OAEP, Cipher.DECRYPT_MODE, key);
+            contentKey = cipher.doFinal(wrapped);
+        } catch (GeneralSecurityException e) {
+            // only the RSA engine is shared by this thread
+            CryptoUtils.releaseCipher(CryptoUtils.RSA_ECB_OAEP);
+            throw e;
+        }
+        if (contentKey.length != CONTENT_KEY_SIZE) {
+            throw new InvalidKeyException("content key length error: " + contentKey.length);
+        }
+        return contentKey;
+    }
+
+    private static Cipher newCipher(int mode, byte[] contentKey, byte[] nonce, byte[] aad)
+            throws GeneralSecurityException {
+        // content key is new for each envelope, so the cipher is not shared
+        Cipher cipher = CryptoUtils.getCipher(AES_GCM_NO_PADDING);
+        cipher.init(mode, new SecretKeySpec(contentKey, "AES"), new GCMParameterSpec(TAG_SIZE * 8, nonce));
+        cipher.updateAAD(aad);
+        return cipher;
+    }
+
+    private static long process(Cipher cipher, InputStream in, OutputStream out)
+            throws IOException, GeneralSecurityException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        byte[] output;
+        int len;
+        while ((len = in.read(buffer)) >= 0) {
+            if (len == 0) {
+                continue;
+            }
+            output = cipher.update(buffer, 0, len);
+            if (output != null) {
+                out.write(output);
+                total += output.length;
+            }
+        }
+        output = cipher.doFinal();
+        out.write(output);
+        total += output.length;
+        return total;
+    }
+
+    private static boolean readFully(InputStream in, byte[] buffer) throws IOException {
+        int pos = 0;
+        int len;
+        while (pos < buffer.length) {
+            len = in.read(buffer, pos, buffer.length - pos);
+            if (len < 0) {
+                return false;
+            }
+            pos += len;
+        }
+        return true;
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        CryptoUtils.getSecureRandom().nextBytes(data);
+        return data;
+    }
+}
@@ -29,6 +29,10 @@ import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.InvalidParameterException;
 import java.security.KeyPair;
@@ -36,17 +40,21 @@ import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.Signature;
 import java.security.SignatureException;
+import java.security.interfaces.RSAPrivateCrtKey;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import chat.dim.ext.GeneralCryptoHelper;
 import chat.dim.format.PlainData;
 import chat.dim.format.RSAKeys;
+import chat.dim.format.UTF8;
 import chat.dim.protocol.AsymmetricAlgorithms;
 import chat.dim.protocol.DecryptKey;
 import chat.dim.protocol.EncryptKey;
 import chat.dim.protocol.PublicKey;
 import chat.dim.protocol.TransportableData;
+import chat.dim.utils.BatchExecutor;
 import chat.dim.utils.CryptoUtils;
 
 /**
@@ -54,34 +62,68 @@ import chat.dim.utils.CryptoUtils;
  *
  *  <blockquote><pre>
  *  keyInfo format: {
- *      "algorithm" : "RSA",
+ *      "algorithm" : "RSA",   // "RSA-OAEP", "RSA-PSS", "RSA-HYBRID"
  *      "data"      : "..." // base64_encode()
  *  }
  *  </pre></blockquote>
  */
 public final class RSAPrivateKey extends BasePrivateKey implements DecryptKey {
 
+    // generator for new keys, null means the JCA KeyPairGenerator
+    private static volatile ParallelRSAGenerator generator = null;
+
+    /**
+     *  Set generator for new keys (see AsymmetricPlugins.registerRSAKeyGenerator)
+     *
+     * @param parallel - parallel generator, null to use the JCA KeyPairGenerator
+     */
+    public static void setGenerator(ParallelRSAGenerator parallel) {
+        generator = parallel;
+    }
+
+    public static ParallelRSAGenerator getGenerator() {
+        return generator;
+    }
+
     private final java.security.interfaces.RSAPrivateKey privateKey;
     private final java.security.interfaces.RSAPublicKey publicKey;
 
+    // modulus length in bytes
+    private final int keySize;
+
+    private byte[] keyIdentifier = null;
+
+    // derived from the keys when first used, then shared by all callers
+    private volatile TransportableData data = null;
+    private volatile PublicKey pubKey = null;
+
     public RSAPrivateKey(Map<String, Object> dictionary) {
         super(dictionary);
         KeyPair keyPair = getKeyPair();
         privateKey = (java.security.interfaces.RSAPrivateKey) keyPair.getPrivate();
         publicKey = (java.security.interfaces.RSAPublicKey) keyPair.getPublic();
+        keySize = CryptoUtils.getRSAKeySize(privateKey.getModulus());
     }
 
     public static RSAPrivateKey newKey() throws NoSuchAlgorithmException {
         return newKey(1024);
     }
     public static RSAPrivateKey newKey(int sizeInBits) throws NoSuchAlgorithmException {
+        return newKey(AsymmetricAlgorithms.RSA, sizeInBits);
+    }
+
+    /**
+     *  Generate RSA key
+     *
+     * @param algorithm  - "RSA", "RSA-OAEP", "RSA-PSS"
+     * @param sizeInBits - 1024, 2048, 3072, ...
+     */
+    public static RSAPrivateKey newKey(String algorithm, int sizeInBits) throws NoSuchAlgorithmException {
         Map<String, Object> info = new HashMap<>();
-        info.put("algorithm", AsymmetricAlgorithms.RSA);
+        info.put("algorithm", algorithm);
 
         // generate key pair
-        KeyPairGenerator generator = CryptoUtils.getKeyPairGenerator(AsymmetricAlgorithms.RSA);
-        generator.initialize(sizeInBits);
-        KeyPair keyPair = generator.generateKeyPair();
+        KeyPair keyPair = generateKeyPair(sizeInBits);
 
         // -----BEGIN PUBLIC KEY-----
         String pkString = RSAKeys.encodePublicKey(keyPair.getPublic());
@@ -95,20 +137,29 @@ public final class RSAPrivateKey extends BasePrivateKey implements DecryptKey {
         info.put("data", pkString + "\r\n" + skString);
         // other parameters
         info.put("mode", "ECB");
-        info.put("padding", "PKCS1");
+        info.put("padding", getPadding(algorithm));
         info.put("digest", "SHA256");
 
         // OK
         return new RSAPrivateKey(info);
     }
 
-    private int keySize() {
-        // TODO: get from key
-        Integer size = getInteger("keySize");
-        if (size != null) {
-            return size;
+    private static KeyPair generateKeyPair(int sizeInBits) throws NoSuchAlgorithmException {
+        ParallelRSAGenerator parallel = generator;
+        if (parallel != null) {
+            KeyPair keyPair = parallel.generateKeyPair(sizeInBits);
+            if (keyPair != null) {
+                return keyPair;
+            }
         }
-        return 1024 / 8; // 128
+        KeyPairGenerator jca = CryptoUtils.getKeyPairGenerator(AsymmetricAlgorithms.RSA);
+        jca.initialize(sizeInBits, CryptoUtils.getSecureRandom());
+        return jca.generateKeyPair();
+    }
+
+    private static String getPadding(String algorithm) {
+        boolean oaep = CryptoUtils.RSA_ECB_OAEP.equals(CryptoUtils.getRSACipherAlgorithm(algorithm));
+        return oaep ? "OAEP" : "PKCS1";
     }
 
     private KeyPair getKeyPair() {
@@ -124,15 +175,28 @@ public final class RSAPrivateKey extends BasePrivateKey implements DecryptKey {
 
     @Override
     public TransportableData getData() {
-        if (privateKey == null) {
-            throw new NullPointerException("RSA private key not found");
+        TransportableData ted = data;
+        if (ted == null) {
+            if (privateKey == null) {
+                throw new NullPointerException("RSA private key not found");
+            }
+            ted = PlainData.create(privateKey.getEncoded());
+            data = ted;
         }
-        byte[] data = privateKey.getEncoded();
-        return PlainData.create(data);
+        return ted;
     }
 
     @Override
     public PublicKey getPublicKey() {
+        PublicKey key = pubKey;
+        if (key == null) {
+            key = createPublicKey();
+            pubKey = key;
+        }
+        return key;
+    }
+
+    private PublicKey createPublicKey() {
         if (publicKey == null) {
             throw new NullPointerException("public key not found");
         }
@@ -143,35 +207,141 @@ public final class RSAPrivateKey extends BasePrivateKey implements DecryptKey {
         keyInfo.put("algorithm", getAlgorithm());    // AsymmetricAlgorithms.RSA
         keyInfo.put("data", pem);
         keyInfo.put("mode", "ECB");
-        keyInfo.put("padding", "PKCS1");
+        keyInfo.put("padding", getPadding(getAlgorithm()));
         keyInfo.put("digest", "SHA256");
         return new RSAPublicKey(keyInfo);
     }
 
+    @Override
+    protected byte[] createKeyMaterial() {
+        // take the public numbers from the private key itself,
+        // the public key block in 'data' may not belong to it
+        if (privateKey instanceof RSAPrivateCrtKey) {
+            RSAPrivateCrtKey crtKey = (RSAPrivateCrtKey) privateKey;
+            return createKeyMaterial(getAlgorithm(), crtKey.getModulus(), crtKey.getPublicExponent());
+        }
+        // compare by signature
+        return null;
+    }
+
+    // cipher transformation + encoded public key, to identify this key in decryption cache,
+    // so the same key with another padding (e.g. 'RSA' & 'RSA-OAEP') will not share results
+    private byte[] getKeyIdentifier() {
+        byte[] identifier = keyIdentifier;
+        if (identifier == null) {
+            byte[] transformation = UTF8.encode(CryptoUtils.getRSACipherAlgorithm(getAlgorithm()));
+            byte[] encoded = publicKey.getEncoded();
+            identifier = new byte[transformation.length + 1 + encoded.length];
+            System.arraycopy(transformation, 0, identifier, 0, transformation.length);
+            identifier[transformation.length] = '\n';
+            System.arraycopy(encoded, 0, identifier, transformation.length + 1, encoded.length);
+            keyIdentifier = identifier;
+        }
+        return identifier;
+    }
+
+    private boolean isHybrid() {
+        return CryptoUtils.RSA_HYBRID.equals(getAlgorithm());
+    }
+
     @Override
     public byte[] decrypt(byte[] ciphertext, Map<String, Object> params) {
-        if (ciphertext.length != keySize()) {
+        if (isHybrid()) {
+            // envelope: wrapped key + AES-GCM body
+            try {
+                return RSAEnvelope.open(privateKey, keySize, ciphertext);
+            } catch (GeneralSecurityException e) {
+                // RSA engine already released by the envelope if it failed
+                e.printStackTrace();
+                return null;
+            }
+        }
+        if (ciphertext.length != keySize) {
             throw new InvalidParameterException("RSA cipher text length error: " + ciphertext.length);
         }
+        // check cache
+        DecryptionCache cache = DecryptionCache.shared;
+        byte[] plaintext;
+        if (cache != null) {
+            plaintext = cache.get(getKeyIdentifier(), ciphertext);
+            if (plaintext != null) {
+                return plaintext;
+            }
+        }
+        String transformation = CryptoUtils.getRSACipherAlgorithm(getAlgorithm());
         try {
-            Cipher cipher = CryptoUtils.getCipher(CryptoUtils.RSA_ECB_PKCS1);
-            cipher.init(Cipher.DECRYPT_MODE, privateKey);
-            return cipher.doFinal(ciphertext);
+            Cipher cipher = CryptoUtils.getCipher(transformation, Cipher.DECRYPT_MODE, privateKey);
+            plaintext = cipher.doFinal(ciphertext);
+            if (cache != null && plaintext != null) {
+                cache.put(getKeyIdentifier(), ciphertext, plaintext);
+            }
+            return plaintext;
         } catch (NoSuchAlgorithmException | NoSuchPaddingException |
                 InvalidKeyException | IllegalBlockSizeException | BadPaddingException e) {
+            CryptoUtils.releaseCipher(transformation);
             e.printStackTrace();
             return null;
         }
     }
 
+    /**
+     *  Decrypt envelope from input stream to output stream (RSA-HYBRID only)
+     *  <p>
+     *      The envelope body has one AES-GCM tag at the end, so the whole
+     *      body is read into memory and decrypted at once, and nothing is
+     *      written to the output before the tag is checked;
+     *      don't use it for payloads larger than the available heap.
+     *  </p>
+     *
+     * @param input  - envelope stream
+     * @param output - plaintext stream
+     * @param params - extra params
+     * @return count of bytes written, -1 on error (the output should be discarded)
+     * @throws IOException on read/write error
+     */
+    public long decrypt(InputStream input, OutputStream output, Map<String, Object> params) throws IOException {
+        if (!isHybrid()) {
+            assert false : "stream decryption needs RSA-HYBRID key: " + getAlgorithm();
+            return -1;
+        }
+        try {
+            return RSAEnvelope.openBuffered(privateKey, keySize, input, output);
+        } catch (GeneralSecurityException e) {
+            // RSA engine already released by the envelope if it failed
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     *  Decrypt all ciphertexts with the shared batch executor
+     *
+     * @param ciphertexts - encrypted data
+     * @return plaintext results in ciphertexts order, with the error for the failed ones
+     */
+    public List<BatchExecutor.Result<byte[]>> decrypt(List<byte[]> ciphertexts) {
+        return decrypt(ciphertexts, BatchExecutor.shared);
+    }
+
+    public List<BatchExecutor.Result<byte[]>> decrypt(List<byte[]> ciphertexts, BatchExecutor executor) {
+        return executor.run(ciphertexts.size(), index -> {
+            byte[] plaintext = decrypt(ciphertexts.get(index), new HashMap<>());
+            if (plaintext == null) {
+                throw new GeneralSecurityException("failed to decrypt ciphertext: " + index);
+            }
+            return plaintext;
+        });
+    }
+
     @Override
     public byte[] sign(byte[] data) {
+        String algorithm = CryptoUtils.getRSASignatureAlgorithm(getAlgorithm());
         try {
-            Signature signer = CryptoUtils.getSignature(CryptoUtils.RSA_SHA256);
-            signer.initSign(privateKey);
+            Signature signer = CryptoUtils.getSigner(algorithm, privateKey);
             signer.update(data);
             return signer.sign();
         } catch (NoSuchAlgorithmException | InvalidKeyException | SignatureException e) {
+            CryptoUtils.releaseSignature(algorithm);
             e.printStackTrace();
             return null;
         }
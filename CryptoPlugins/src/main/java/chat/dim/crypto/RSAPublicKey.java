@@ -29,15 +29,24 @@ import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.InvalidParameterException;
+import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.Signature;
 import java.security.SignatureException;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
 import java.util.Map;
 
+import chat.dim.format.PEM;
 import chat.dim.format.PlainData;
 import chat.dim.format.RSAKeys;
+import chat.dim.protocol.AsymmetricAlgorithms;
 import chat.dim.protocol.EncryptKey;
 import chat.dim.protocol.TransportableData;
 import chat.dim.utils.CryptoUtils;
@@ -47,72 +56,204 @@ import chat.dim.utils.CryptoUtils;
  *
  *  <blockquote><pre>
  *  keyInfo format: {
- *      "algorithm" : "RSA",
+ *      "algorithm" : "RSA",   // "RSA-OAEP", "RSA-PSS", "RSA-HYBRID"
  *      "data"      : "..." // base64_encode()
  *  }
  *  </pre></blockquote>
  */
 public final class RSAPublicKey extends BasePublicKey implements EncryptKey {
 
-    private final java.security.interfaces.RSAPublicKey publicKey;
+    // decoded from 'data' when first used
+    private volatile java.security.interfaces.RSAPublicKey publicKey;
+
+    // encoded key data, created when first used
+    private volatile TransportableData data;
+
+    // modulus length in bytes, 0 means not calculated yet
+    private int keySize;
 
     public RSAPublicKey(Map<String, Object> dictionary) {
         super(dictionary);
-        publicKey = getKey();
+        // lazy load, but reject malformed data now
+        checkKeyData(getString("data"));
+        publicKey = null;
+        data = null;
+        keySize = 0;
+    }
+
+    /**
+     *  Create key for a dictionary with the same 'data' as the compact key
+     *  (e.g. from the key cache), the key object will be built from the
+     *  raw key bytes when first used, without decoding the PEM again
+     *
+     * @param dictionary - key info
+     * @param compact    - raw key data (X.509)
+     */
+    public RSAPublicKey(Map<String, Object> dictionary, CompactKey compact) {
+        super(dictionary);
+        publicKey = null;
+        data = PlainData.create(compact.getData());
+        keySize = 0;
+    }
+
+    // check PEM structure and the DER body, without creating the key object
+    private static void checkKeyData(String pem) {
+        if (pem == null) {
+            throw new NullPointerException("RSA public key data not found");
+        }
+        byte[] der;
+        try {
+            der = PEM.decodePublicKeyData(pem, AsymmetricAlgorithms.RSA);
+        } catch (RuntimeException e) {
+            // PEM format error, or Base64 error
+            throw new IllegalArgumentException("RSA public key data error: " + pem, e);
+        }
+        if (der == null || der.length == 0 || der[0] != 0x30) {
+            throw new IllegalArgumentException("RSA public key data error: " + pem);
+        }
     }
 
     private int keySize() {
-        // TODO: get from key
-        Integer size = getInteger("keySize");
-        if (size != null) {
-            return size;
+        int size = keySize;
+        if (size == 0) {
+            size = CryptoUtils.getRSAKeySize(getKey().getModulus());
+            keySize = size;
         }
-        return 1024 / 8; // 128
+        return size;
     }
 
     private java.security.interfaces.RSAPublicKey getKey() {
-        String data = getString("data");
-        if (data == null) {
-            throw new NullPointerException("RSA public key data not found");
+        java.security.interfaces.RSAPublicKey key = publicKey;
+        if (key == null) {
+            TransportableData ted = data;
+            String data = getString("data");
+            java.security.PublicKey decoded;
+            if (ted != null) {
+                // raw key data from the key cache
+                decoded = decodeKey(ted.getBytes());
+            } else if (data == null) {
+                throw new NullPointerException("RSA public key data not found");
+            } else {
+                decoded = RSAKeys.decodePublicKey(data);
+            }
+            if (!(decoded instanceof java.security.interfaces.RSAPublicKey)) {
+                throw new IllegalArgumentException("RSA public key data error: " + data);
+            }
+            key = (java.security.interfaces.RSAPublicKey) decoded;
+            publicKey = key;
+        }
+        return key;
+    }
+
+    private static java.security.PublicKey decodeKey(byte[] x509) {
+        try {
+            KeyFactory factory = CryptoUtils.getKeyFactory(AsymmetricAlgorithms.RSA);
+            return factory.generatePublic(new X509EncodedKeySpec(x509));
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            e.printStackTrace();
+            return null;
         }
-        return (java.security.interfaces.RSAPublicKey) RSAKeys.decodePublicKey(data);
+    }
+
+    @Override
+    protected byte[] createKeyMaterial() {
+        java.security.interfaces.RSAPublicKey key;
+        try {
+            key = getKey();
+        } catch (IllegalArgumentException e) {
+            // key data error, compare by inner map
+            return null;
+        }
+        return createKeyMaterial(getAlgorithm(), key.getModulus(), key.getPublicExponent());
     }
 
     @Override
     public TransportableData getData() {
-        if (publicKey == null) {
-            throw new NullPointerException("RSA public key not found");
+        TransportableData ted = data;
+        if (ted == null) {
+            java.security.interfaces.RSAPublicKey publicKey = getKey();
+            if (publicKey == null) {
+                throw new NullPointerException("RSA public key not found");
+            }
+            ted = PlainData.create(publicKey.getEncoded());
+            data = ted;
         }
-        byte[] data = publicKey.getEncoded();
-        return PlainData.create(data);
+        return ted;
+    }
+
+    private boolean isHybrid() {
+        return CryptoUtils.RSA_HYBRID.equals(getAlgorithm());
     }
 
     @Override
     public byte[] encrypt(byte[] plaintext, Map<String, Object> extra) {
-        if (plaintext.length > (keySize() - 11)) {
+        if (isHybrid()) {
+            // envelope: wrapped key + AES-GCM body, no limit for plain text length
+            try {
+                return RSAEnvelope.seal(getKey(), plaintext);
+            } catch (GeneralSecurityException e) {
+                // RSA engine already released by the envelope if it failed
+                e.printStackTrace();
+                return null;
+            }
+        }
+        String transformation = CryptoUtils.getRSACipherAlgorithm(getAlgorithm());
+        if (plaintext.length > CryptoUtils.getRSAMaxPlaintextLength(transformation, keySize())) {
             throw new InvalidParameterException("RSA plain text length error: " + plaintext.length);
         }
         try {
-            Cipher cipher = CryptoUtils.getCipher(CryptoUtils.RSA_ECB_PKCS1);
-            cipher.init(Cipher.ENCRYPT_MODE, publicKey);
+            Cipher cipher = CryptoUtils.getCipher(transformation, Cipher.ENCRYPT_MODE, getKey());
             return cipher.doFinal(plaintext);
         } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException |
                 IllegalBlockSizeException | BadPaddingException e) {
+            CryptoUtils.releaseCipher(transformation);
             e.printStackTrace();
             return null;
         }
     }
 
+    /**
+     *  Encrypt data from input stream to an envelope (RSA-HYBRID only)
+     *
+     * @param input  - plaintext stream
+     * @param output - envelope stream
+     * @param extra  - extra params
+     * @return count of bytes written, -1 on error (the output should be discarded)
+     * @throws IOException on read/write error
+     */
+    public long encrypt(InputStream input, OutputStream output, Map<String, Object> extra) throws IOException {
+        if (!isHybrid()) {
+            assert false : "stream encryption needs RSA-HYBRID key: " + getAlgorithm();
+            return -1;
+        }
+        try {
+            return RSAEnvelope.seal(getKey(), input, output);
+        } catch (GeneralSecurityException e) {
+            // RSA engine already released by the envelope if it failed
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
     @Override
     public boolean verify(byte[] data, byte[] signature) {
+        return verify(data, signature, this::verifySignature);
+    }
+
+    private boolean verifySignature(byte[] data, byte[] signature) {
+        String algorithm = CryptoUtils.getRSASignatureAlgorithm(getAlgorithm());
         try {
-            Signature signer = CryptoUtils.getSignature(CryptoUtils.RSA_SHA256);
-            signer.initVerify(publicKey);
+            Signature signer = CryptoUtils.getVerifier(algorithm, getKey());
             signer.update(data);
             return signer.verify(signature);
         } catch (NoSuchAlgorithmException | InvalidKeyException | SignatureException e) {
+            CryptoUtils.releaseSignature(algorithm);
             //e.printStackTrace();
             return false;
+        } catch (IllegalArgumentException e) {
+            // key data error
+            e.printStackTrace();
+            return false;
         }
     }
 
@@ -0,0 +1,159 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import chat.dim.utils.LRUCache;
+
+/**
+ *  Cache for results of signature verification
+ *
+ *  <p>
+ *      Metas, visas and documents are verified again every time they are
+ *      loaded or forwarded, so the successful (key, data, signature) triples
+ *      are remembered by one digest, and the same check costs one hash plus
+ *      a lookup next time. Failed verifications are never cached.
+ *  </p>
+ *
+ *  <blockquote><pre>
+ *  Usage:
+ *      VerificationCache.shared = new VerificationCache(4096, 3600 * 1000);
+ *  </pre></blockquote>
+ */
+public class VerificationCache {
+
+    /**
+     *  Shared cache for all verify keys, null means disabled
+     */
+    public static VerificationCache shared = null;
+
+    public interface Verifier {
+
+        boolean verify(byte[] data, byte[] signature);
+    }
+
+    private final LRUCache<ByteBuffer, Boolean> results;
+
+    /**
+     *  Create verification cache
+     *
+     * @param capacity - max count of results
+     * @param lifeSpan - milliseconds for each result to live
+     */
+    public VerificationCache(int capacity, long lifeSpan) {
+        super();
+        results = new LRUCache<>(capacity, lifeSpan);
+    }
+
+    // one engine per thread
+    private static final ThreadLocal<MessageDigest> engines = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private static ByteBuffer getIndex(byte[] keyId, byte[] data, byte[] signature) {
+        MessageDigest md = engines.get();
+        md.reset();
+        // lengths prefixed, so the fields cannot be shifted into each other
+        updateLength(md, keyId.length);
+        md.update(keyId);
+        updateLength(md, data.length);
+        md.update(data);
+        md.update(signature);
+        return ByteBuffer.wrap(md.digest());
+    }
+
+    private static void updateLength(MessageDigest md, int length) {
+        md.update((byte) (length >>> 24));
+        md.update((byte) (length >>> 16));
+        md.update((byte) (length >>> 8));
+        md.update((byte) length);
+    }
+
+    /**
+     *  Check cached result, or verify and cache it when succeeded
+     *
+     * @param keyId     - public identity of the verify key (algorithm + curve + key data)
+     * @param data      - signed data
+     * @param signature - signature of the data
+     * @param verifier  - verify the signature when not cached
+     * @return true on signature matched
+     */
+    public boolean verify(byte[] keyId, byte[] data, byte[] signature, Verifier verifier) {
+        ByteBuffer index = getIndex(keyId, data, signature);
+        if (results.get(index) != null) {
+            return true;
+        }
+        if (verifier.verify(data, signature)) {
+            results.put(index, Boolean.TRUE);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     *  Remove expired results
+     */
+    public int purge() {
+        return results.purge();
+    }
+
+    public void clear() {
+        results.clear();
+    }
+
+    //
+    //  Statistics
+    //
+
+    public int size() {
+        return results.size();
+    }
+
+    public long getHitCount() {
+        return results.getHitCount();
+    }
+
+    public long getMissCount() {
+        return results.getMissCount();
+    }
+
+    public long getEvictionCount() {
+        return results.getEvictionCount();
+    }
+
+    @Override
+    public String toString() {
+        return results.toString();
+    }
+
+}
@@ -27,6 +27,7 @@ package chat.dim.ecc;
 
 import java.math.BigInteger;
 import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
 import java.security.KeyFactory;
 import java.security.interfaces.ECPrivateKey;
 import java.security.interfaces.ECPublicKey;
@@ -46,6 +47,10 @@ final class ECCGenerator {
 
     public static ECPublicKey getPublicKey(ECPrivateKey pk) throws GeneralSecurityException {
         ECParameterSpec params = pk.getParams();
+        if (params.getOrder().compareTo(SECP256K1_Q) > 0) {
+            // the scalar is reduced by the order of secp256k1 below
+            throw new InvalidKeyException("curve order not supported: " + params.getOrder().bitLength());
+        }
         ECPoint w = scalmult(params.getCurve(), pk.getParams().getGenerator(), pk.getS());
         KeyFactory kg = CryptoUtils.getKeyFactory(CryptoUtils.EC);
         return (ECPublicKey) kg.generatePublic(new ECPublicKeySpec(w, params));
@@ -57,9 +62,6 @@ final class ECCGenerator {
         BigInteger p = ((ECFieldFp) field).getP();
         BigInteger a = curve.getA();
         ECPoint R = ECPoint.POINT_INFINITY;
-        // value only valid for curve secp256k1, code taken from https://www.secg.org/sec2-v2.pdf,
-        // see "Finally the order n of G and the cofactor are: n = "FF.."
-        BigInteger SECP256K1_Q = new BigInteger("00FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEBAAEDCE6AF48A03BBFD25E8CD0364141",16);
         BigInteger k = kin.mod(SECP256K1_Q); // uses this !
         // wrong as per comment from President James Moveon Polk
         // BigInteger k = kin.mod(p); // do not use this !
@@ -101,6 +103,10 @@ final class ECCGenerator {
         return new ECPoint(Xout, Yout);
     }
 
+    // value only valid for curve secp256k1, code taken from https://www.secg.org/sec2-v2.pdf,
+    // see "Finally the order n of G and the cofactor are: n = "FF.."
+    static private final BigInteger SECP256K1_Q = new BigInteger("00FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEBAAEDCE6AF48A03BBFD25E8CD0364141",16);
+
     static private final BigInteger FieldP_2 = BigInteger.valueOf(2); // constant for scalar operations
     static private final BigInteger FieldP_3 = BigInteger.valueOf(3); // constant for scalar operations
 }
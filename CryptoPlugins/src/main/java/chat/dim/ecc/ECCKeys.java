@@ -206,6 +206,17 @@ public final class ECCKeys {
         return publicKeyParser.decode(pem);
     }
 
+    /**
+     *  Create public key from uncompressed point data (secp256k1),
+     *  same as decoding the Hex string
+     *
+     * @param point - 04 + X + Y
+     * @return null on error
+     */
+    public static PublicKey decodePublicKey(byte[] point) {
+        return createPublicKey(point);
+    }
+
     public static String encodePrivateKey(PrivateKey key) {
         return privateKeyParser.encode(key);
     }
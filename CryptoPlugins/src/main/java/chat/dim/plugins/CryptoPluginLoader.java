@@ -30,6 +30,8 @@ import java.security.Security;
 
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
+import chat.dim.crypto.ParallelRSAGenerator;
+
 
 /**
  *  Extra Plugins Loader
@@ -100,6 +102,8 @@ public class CryptoPluginLoader implements JsonCoderPlugins, MessageDigestPlugin
 
         registerKeccak256Digester();
 
+        registerBlake2bDigester();
+
     }
 
     /**
@@ -114,9 +118,23 @@ public class CryptoPluginLoader implements JsonCoderPlugins, MessageDigestPlugin
         /*/
 
         // Asymmetric keys
+        registerRSAKeyGenerator(createRSAKeyGenerator());
         registerRSAKeyFactories();
         registerECCKeyFactories();
 
     }
 
+    /**
+     *  Override to generate new RSA keys with the parallel prime search, e.g.:
+     *
+     *  <blockquote><pre>
+     *      return new ParallelRSAGenerator(executor, 4);
+     *  </pre></blockquote>
+     *
+     * @return null to use the JCA KeyPairGenerator
+     */
+    protected ParallelRSAGenerator createRSAKeyGenerator() {
+        return null;
+    }
+
 }
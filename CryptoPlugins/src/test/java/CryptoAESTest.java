@@ -2,9 +2,15 @@
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+import chat.dim.crypto.AESKey;
 import chat.dim.format.Base64;
 import chat.dim.format.Hex;
 import chat.dim.format.JSON;
@@ -81,4 +87,59 @@ public class CryptoAESTest {
 
         Assert.assertEquals(text, decrypt);
     }
+
+    @Test
+    public void testAESStream() throws IOException {
+        AESKey key = (AESKey) SymmetricKey.generate(SymmetricAlgorithms.AES);
+        byte[] plaintext = new byte[200 * 1024 + 7];
+        for (int i = 0; i < plaintext.length; ++i) {
+            plaintext[i] = (byte) i;
+        }
+        Map<String, Object> extra = new HashMap<>();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long size = key.encrypt(new ByteArrayInputStream(plaintext), out, extra);
+        byte[] ciphertext = out.toByteArray();
+        Log.info("stream encrypt: " + plaintext.length + " -> " + size + " bytes");
+        Assert.assertEquals(ciphertext.length, size);
+        // same as the one-shot encryption with the same IV
+        Assert.assertArrayEquals(ciphertext, key.encrypt(plaintext, extra));
+
+        out = new ByteArrayOutputStream();
+        size = key.decrypt(new ByteArrayInputStream(ciphertext), out, extra);
+        Assert.assertEquals(plaintext.length, size);
+        Assert.assertArrayEquals(plaintext, out.toByteArray());
+
+        // broken data
+        size = key.decrypt(new ByteArrayInputStream(ciphertext, 0, 17), new ByteArrayOutputStream(), extra);
+        Assert.assertEquals(-1, size);
+    }
+
+    @Test
+    public void testAESBuffer() {
+        AESKey key = (AESKey) SymmetricKey.generate(SymmetricAlgorithms.AES);
+        byte[] plaintext = UTF8.encode("Hello world!");
+        Map<String, Object> extra = new HashMap<>();
+        byte[] ciphertext = key.encrypt(plaintext, extra);
+        Assert.assertEquals(ciphertext.length, key.getEncryptOutputSize(plaintext.length));
+
+        // in place
+        byte[] buffer = new byte[4 + ciphertext.length];
+        System.arraycopy(plaintext, 0, buffer, 4, plaintext.length);
+        int len = key.encrypt(buffer, 4, plaintext.length, buffer, 4, extra);
+        Assert.assertEquals(ciphertext.length, len);
+        Assert.assertArrayEquals(ciphertext, Arrays.copyOfRange(buffer, 4, 4 + len));
+        len = key.decrypt(buffer, 4, len, buffer, 4, extra);
+        Assert.assertArrayEquals(plaintext, Arrays.copyOfRange(buffer, 4, 4 + len));
+
+        // direct buffers
+        ByteBuffer input = ByteBuffer.allocateDirect(plaintext.length);
+        input.put(plaintext).flip();
+        ByteBuffer output = ByteBuffer.allocateDirect(key.getEncryptOutputSize(input.remaining()));
+        Assert.assertEquals(ciphertext.length, key.encrypt(input, output, extra));
+        output.flip();
+        ByteBuffer result = ByteBuffer.allocate(key.getDecryptOutputSize(output.remaining()));
+        len = key.decrypt(output, result, extra);
+        Assert.assertArrayEquals(plaintext, Arrays.copyOf(result.array(), len));
+    }
 }
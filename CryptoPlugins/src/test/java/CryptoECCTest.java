@@ -5,6 +5,8 @@ import org.junit.Test;
 import java.util.HashMap;
 import java.util.Map;
 
+import chat.dim.crypto.CompactKey;
+import chat.dim.crypto.ECCPublicKey;
 import chat.dim.digest.RIPEMD160;
 import chat.dim.digest.SHA256;
 import chat.dim.format.Hex;
@@ -292,6 +294,73 @@ public class CryptoECCTest {
         testValidate("0xfb6916095ca1df60bb79ce92ce3ea74c37c5d359",
                 "0xfB6916095ca1df60bB79Ce92cE3Ea74c37c5d359");
     }
+
+    @Test
+    public void testKeyMaterialEquals() {
+        PrivateKey sk1 = PrivateKey.generate(AsymmetricAlgorithms.ECC);
+        PrivateKey sk2 = PrivateKey.parse(new HashMap<>(sk1.toMap()));
+        Assert.assertNotSame(sk1, sk2);
+        Assert.assertEquals(sk1, sk2);
+        Assert.assertEquals(sk1.hashCode(), sk2.hashCode());
+
+        PublicKey pk1 = sk1.getPublicKey();
+        PublicKey pk2 = sk2.getPublicKey();
+        Assert.assertEquals(pk1, pk2);
+        Assert.assertEquals(pk1.hashCode(), pk2.hashCode());
+        Assert.assertTrue(pk1.matchSignKey(sk2));
+
+        PrivateKey other = PrivateKey.generate(AsymmetricAlgorithms.ECC);
+        Assert.assertNotEquals(sk1, other);
+        Assert.assertNotEquals(pk1, other.getPublicKey());
+        Assert.assertFalse(pk1.matchSignKey(other));
+
+        // the public key block in 'data' doesn't belong to the private key
+        Map<String, Object> info = new HashMap<>(sk1.toMap());
+        info.put("data", other.getPublicKey().toMap().get("data") + "\r\n" + sk1.toMap().get("data"));
+        PrivateKey mixed = PrivateKey.parse(info);
+        Assert.assertEquals(sk1, mixed);
+        Assert.assertTrue(pk1.matchSignKey(mixed));
+        Assert.assertFalse(other.getPublicKey().matchSignKey(mixed));
+
+        // same point on another curve name
+        Map<String, Object> curve = new HashMap<>(pk1.toMap());
+        curve.put("curve", "secp256r1");
+        Assert.assertNotEquals(pk1, new ECCPublicKey(curve));
+
+        // compact key keeps the curve name
+        CompactKey compact = CompactKey.from(new ECCPublicKey(curve));
+        Assert.assertEquals("secp256r1", compact.getCurve());
+        Assert.assertEquals("secp256r1", compact.toPublicKey().getString("curve"));
+        Assert.assertNotEquals(compact, CompactKey.from(pk1));
+
+        // a plain map never equals a key
+        Assert.assertNotEquals(sk1, sk1.toMap());
+        Assert.assertNotEquals(pk1, pk1.toMap());
+
+        int count = 1000;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; ++i) {
+            Assert.assertEquals(sk1, sk2);
+        }
+        Log.info("ECC key equals: " + ((System.nanoTime() - start) / count) + " ns/op");
+    }
+
+    @Test
+    public void testDerivedKeys() {
+        PrivateKey sk = PrivateKey.generate(AsymmetricAlgorithms.ECC);
+        // created once per key
+        Assert.assertSame(sk.getPublicKey(), sk.getPublicKey());
+        Assert.assertSame(sk.getData(), sk.getData());
+        PublicKey pk = sk.getPublicKey();
+        Assert.assertSame(pk.getData(), pk.getData());
+
+        int count = 10000;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; ++i) {
+            sk.getPublicKey().getData();
+        }
+        Log.info("ECC derived keys: " + ((System.nanoTime() - start) / count) + " ns/op");
+    }
 }
 
 // openssl ecparam -name secp256k1 -genkey -out secp256k1-priv.pem
@@ -2,9 +2,25 @@
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import chat.dim.crypto.BatchEncrypter;
+import chat.dim.crypto.CompactKey;
+import chat.dim.crypto.DecryptionCache;
+import chat.dim.crypto.ParallelRSAGenerator;
+import chat.dim.crypto.PrivateKeyPool;
+import chat.dim.crypto.PublicKeyCache;
+import chat.dim.crypto.RSAPrivateKey;
+import chat.dim.crypto.RSAPublicKey;
+import chat.dim.crypto.VerificationCache;
 import chat.dim.format.Hex;
 import chat.dim.format.UTF8;
 import chat.dim.protocol.AsymmetricAlgorithms;
@@ -12,6 +28,9 @@ import chat.dim.protocol.DecryptKey;
 import chat.dim.protocol.EncryptKey;
 import chat.dim.protocol.PrivateKey;
 import chat.dim.protocol.PublicKey;
+import chat.dim.utils.BatchExecutor;
+import chat.dim.utils.CryptoUtils;
+import chat.dim.utils.LRUCache;
 import chat.dim.Facebook;
 
 public class CryptoRSATest {
@@ -69,4 +88,494 @@ public class CryptoRSATest {
         PrivateKey sk = PrivateKey.parse(dictionary);
         Log.info("private key: " + sk);
     }
+
+    @Test
+    public void testDecryptionCache() {
+        PrivateKey sk = PrivateKey.generate(AsymmetricAlgorithms.RSA);
+        PublicKey pk = sk.getPublicKey();
+        Map<String, Object> extra = new HashMap<>();
+        byte[] plaintext = UTF8.encode("session key");
+        byte[] ciphertext = ((EncryptKey) pk).encrypt(plaintext, extra);
+
+        DecryptionCache cache = new DecryptionCache(16, 60 * 1000);
+        DecryptionCache origin = DecryptionCache.shared;
+        DecryptionCache.shared = cache;
+        try {
+            byte[] data1 = ((DecryptKey) sk).decrypt(ciphertext, extra);
+            Assert.assertEquals(1, cache.size());
+            byte[] data2 = ((DecryptKey) sk).decrypt(ciphertext, extra);
+            Assert.assertArrayEquals(plaintext, data1);
+            Assert.assertArrayEquals(plaintext, data2);
+            // results are copied
+            data2[0] = 0;
+            Assert.assertArrayEquals(plaintext, ((DecryptKey) sk).decrypt(ciphertext, extra));
+            // same key with another padding doesn't share the results
+            Map<String, Object> info = new HashMap<>(sk.toMap());
+            info.put("algorithm", CryptoUtils.RSA_OAEP);
+            PrivateKey oaep = PrivateKey.parse(info);
+            Assert.assertNull(((DecryptKey) oaep).decrypt(ciphertext, extra));
+            Log.info("decryption cache: " + cache);
+            cache.clear();
+            Assert.assertEquals(0, cache.size());
+        } finally {
+            DecryptionCache.shared = origin;
+        }
+    }
+
+    @Test
+    public void testLRUCacheRemove() {
+        List<String> evicted = new ArrayList<>();
+        LRUCache<String, String> cache = new LRUCache<>(4, 0, (key, value) -> evicted.add(key));
+        cache.put("moky", "session key");
+        Assert.assertEquals("session key", cache.remove("moky"));
+        Assert.assertNull(cache.remove("moky"));
+        // removed values are passed to the listener too
+        Assert.assertEquals(1, evicted.size());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testBatchEncrypt() {
+        List<PrivateKey> privateKeys = new ArrayList<>();
+        List<EncryptKey> publicKeys = new ArrayList<>();
+        PrivateKey sk;
+        for (int i = 0; i < 20; ++i) {
+            sk = PrivateKey.generate(AsymmetricAlgorithms.RSA);
+            privateKeys.add(sk);
+            publicKeys.add((EncryptKey) sk.getPublicKey());
+        }
+        byte[] plaintext = UTF8.encode("group message key");
+        List<BatchExecutor.Result<byte[]>> results = new BatchEncrypter().encrypt(plaintext, publicKeys);
+        Assert.assertEquals(publicKeys.size(), results.size());
+        Map<String, Object> extra = new HashMap<>();
+        for (int i = 0; i < results.size(); ++i) {
+            sk = privateKeys.get(i);
+            Assert.assertTrue(results.get(i).isSuccess());
+            Assert.assertArrayEquals(plaintext, ((DecryptKey) sk).decrypt(results.get(i).getValue(), extra));
+        }
+    }
+
+    @Test
+    public void testCompactKey() {
+        PrivateKey sk = PrivateKey.generate(AsymmetricAlgorithms.RSA);
+        PublicKey pk = sk.getPublicKey();
+        CompactKey compact = CompactKey.from(pk);
+        Log.info("compact key: " + compact);
+        PublicKey key = compact.toPublicKey();
+        Assert.assertArrayEquals(pk.getData().getBytes(), key.getData().getBytes());
+
+        byte[] plaintext = UTF8.encode("moky");
+        byte[] signature = sk.sign(plaintext);
+        Assert.assertTrue(key.verify(plaintext, signature));
+    }
+
+    @Test
+    public void testMalformedPublicKey() {
+        Map<String, Object> info = new HashMap<>();
+        info.put("algorithm", AsymmetricAlgorithms.RSA);
+        info.put("data", "-----BEGIN PUBLIC KEY-----\nbW9reQ==\n-----END PUBLIC KEY-----");
+        try {
+            PublicKey.parse(info);
+            Assert.fail("malformed key data should be rejected");
+        } catch (IllegalArgumentException e) {
+            Log.info("rejected: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testSignatureReuse() {
+        PrivateKey sk1 = PrivateKey.generate(AsymmetricAlgorithms.RSA);
+        PrivateKey sk2 = PrivateKey.generate(AsymmetricAlgorithms.RSA);
+        PublicKey pk1 = sk1.getPublicKey();
+        PublicKey pk2 = sk2.getPublicKey();
+        byte[] data = UTF8.encode("moky");
+        byte[] sig1 = sk1.sign(data);
+        byte[] sig2 = sk2.sign(data);
+        // switching keys on the same thread
+        Assert.assertTrue(pk1.verify(data, sig1));
+        Assert.assertFalse(pk1.verify(data, sig2));
+        Assert.assertTrue(pk2.verify(data, sig2));
+        Assert.assertFalse(pk2.verify(data, sig1));
+        Assert.assertFalse(pk1.verify(data, new byte[3]));
+        Assert.assertTrue(pk1.verify(data, sig1));
+
+        int count = 1000;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; ++i) {
+            Assert.assertTrue(pk1.verify(data, sig1));
+        }
+        long cost = System.nanoTime() - start;
+        Log.info("RSA verify: " + (cost / count / 1000) + " us/op");
+    }
+
+    @Test
+    public void testPublicKeyCache() {
+        PublicKeyCache cache = new PublicKeyCache(512);
+        PublicKeyCache origin = PublicKeyCache.shared;
+        PublicKeyCache.shared = cache;
+        try {
+            PublicKey pk = PrivateKey.generate(AsymmetricAlgorithms.RSA).getPublicKey();
+            PublicKey key1 = PublicKey.parse(new HashMap<>(pk.toMap()));
+            Map<String, Object> info = new HashMap<>(pk.toMap());
+            info.put("extra", "moky");
+            PublicKey key2 = PublicKey.parse(info);
+            // each caller gets its own key object, built from the cached raw key data
+            Assert.assertNotSame(key1, key2);
+            Assert.assertEquals(key1, key2);
+            Assert.assertEquals("moky", key2.getString("extra"));
+            Assert.assertNull(key1.get("extra"));
+            Assert.assertEquals(1, cache.getHitCount());
+            Assert.assertEquals(1, cache.getMissCount());
+            Log.info("public key cache: " + cache);
+
+            // same point on another curve is another key
+            PublicKey ecc = PrivateKey.generate(AsymmetricAlgorithms.ECC).getPublicKey();
+            PublicKey.parse(new HashMap<>(ecc.toMap()));
+            Map<String, Object> curve = new HashMap<>(ecc.toMap());
+            curve.put("curve", "secp256r1");
+            Assert.assertEquals("secp256r1", PublicKey.parse(curve).getString("curve"));
+            Assert.assertEquals(1, cache.getHitCount());
+            Assert.assertEquals(3, cache.getMissCount());
+            // evicted by size
+            for (int i = 0; i < 5; ++i) {
+                pk = PrivateKey.generate(AsymmetricAlgorithms.RSA).getPublicKey();
+                PublicKey.parse(pk.toMap());
+            }
+            Assert.assertTrue(cache.getWeight() <= 512);
+            Assert.assertTrue(cache.getEvictionCount() > 0);
+        } finally {
+            PublicKeyCache.shared = origin;
+        }
+    }
+
+    // copy key info with new strings, not sharing them with the origin
+    private static Map<String, Object> copyKeyInfo(Map<String, Object> info) {
+        Map<String, Object> copy = new HashMap<>();
+        for (Map.Entry<String, Object> entry : info.entrySet()) {
+            Object value = entry.getValue();
+            copy.put(entry.getKey(), value instanceof String ? new String((String) value) : value);
+        }
+        return copy;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    public void testPublicKeyCacheHeap() {
+        int count = 200;
+        List<Map<String, Object>> keys = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            keys.add(PrivateKey.generate(AsymmetricAlgorithms.RSA).getPublicKey().toMap());
+        }
+        // dictionary + decoded key
+        List<PublicKey> parsed = new ArrayList<>();
+        long start = usedMemory();
+        for (Map<String, Object> info : keys) {
+            PublicKey key = PublicKey.parse(copyKeyInfo(info));
+            key.getData();
+            parsed.add(key);
+        }
+        long full = (usedMemory() - start) / count;
+        Assert.assertEquals(count, parsed.size());
+        parsed.clear();
+        // digest index + compact key
+        PublicKeyCache cache = new PublicKeyCache(Long.MAX_VALUE);
+        start = usedMemory();
+        for (Map<String, Object> info : keys) {
+            cache.put(info, CompactKey.from(PublicKey.parse(copyKeyInfo(info))));
+        }
+        long compact = (usedMemory() - start) / count;
+        Assert.assertEquals(count, cache.size());
+        Log.info("retained heap per RSA key: " + full + " bytes, cached: " + compact + " bytes");
+        Assert.assertTrue(compact < full);
+    }
+
+    @Test
+    public void testPrivateKeyPool() throws InterruptedException {
+        PrivateKeyPool pool = PrivateKeyPool.newRSAPool(2);
+        try {
+            Thread.sleep(500);
+            Log.info("RSA key pool: " + pool.size());
+            // more than the pool depth, the rest will be generated inline
+            for (int i = 0; i < 4; ++i) {
+                long start = System.currentTimeMillis();
+                PrivateKey sk = pool.take();
+                Log.info("took RSA key in " + (System.currentTimeMillis() - start) + " ms");
+                Assert.assertNotNull(sk);
+                byte[] data = UTF8.encode("moky");
+                Assert.assertTrue(sk.getPublicKey().verify(data, sk.sign(data)));
+            }
+        } finally {
+            pool.stop();
+        }
+    }
+
+    @Test
+    public void testKeySizes() throws Exception {
+        // measure the decryption, not the cache
+        DecryptionCache origin = DecryptionCache.shared;
+        DecryptionCache.shared = null;
+        try {
+            String[] algorithms = {AsymmetricAlgorithms.RSA, CryptoUtils.RSA_OAEP, CryptoUtils.RSA_PSS};
+            int[] sizes = {1024, 2048, 3072};
+            for (String algorithm : algorithms) {
+                for (int bits : sizes) {
+                    long start = System.currentTimeMillis();
+                    PrivateKey sk = RSAPrivateKey.newKey(algorithm, bits);
+                    long genCost = System.currentTimeMillis() - start;
+                    // parsed from dictionary
+                    sk = PrivateKey.parse(sk.toMap());
+                    PublicKey pk = PublicKey.parse(sk.getPublicKey().toMap());
+                    Assert.assertEquals(algorithm, pk.getAlgorithm());
+
+                    // max plain text for the padding
+                    String transformation = CryptoUtils.getRSACipherAlgorithm(algorithm);
+                    byte[] plaintext = new byte[CryptoUtils.getRSAMaxPlaintextLength(transformation, bits / 8)];
+                    byte[] ciphertext = ((EncryptKey) pk).encrypt(plaintext, null);
+                    Assert.assertEquals(bits / 8, ciphertext.length);
+                    Assert.assertArrayEquals(plaintext, ((DecryptKey) sk).decrypt(ciphertext, null));
+                    byte[] signature = sk.sign(plaintext);
+                    Assert.assertEquals(bits / 8, signature.length);
+                    Assert.assertTrue(pk.verify(plaintext, signature));
+
+                    int count = 100;
+                    long t0 = System.nanoTime();
+                    for (int i = 0; i < count; ++i) {
+                        ((EncryptKey) pk).encrypt(plaintext, null);
+                    }
+                    long t1 = System.nanoTime();
+                    for (int i = 0; i < count; ++i) {
+                        ((DecryptKey) sk).decrypt(ciphertext, null);
+                    }
+                    long t2 = System.nanoTime();
+                    for (int i = 0; i < count; ++i) {
+                        sk.sign(plaintext);
+                    }
+                    long t3 = System.nanoTime();
+                    for (int i = 0; i < count; ++i) {
+                        pk.verify(plaintext, signature);
+                    }
+                    long t4 = System.nanoTime();
+                    Log.info(algorithm + "-" + bits + ": generate " + genCost + " ms" +
+                            ", encrypt " + ((t1 - t0) / count / 1000) + " us" +
+                            ", decrypt " + ((t2 - t1) / count / 1000) + " us" +
+                            ", sign " + ((t3 - t2) / count / 1000) + " us" +
+                            ", verify " + ((t4 - t3) / count / 1000) + " us");
+                }
+            }
+        } finally {
+            DecryptionCache.shared = origin;
+        }
+    }
+
+    @Test
+    public void testHybrid() throws IOException {
+        PrivateKey sk = PrivateKey.generate(CryptoUtils.RSA_HYBRID);
+        PublicKey pk = PublicKey.parse(sk.getPublicKey().toMap());
+        Assert.assertEquals(CryptoUtils.RSA_HYBRID, pk.getAlgorithm());
+
+        // larger than one RSA block
+        byte[] plaintext = new byte[100 * 1024];
+        for (int i = 0; i < plaintext.length; ++i) {
+            plaintext[i] = (byte) i;
+        }
+        byte[] ciphertext = ((EncryptKey) pk).encrypt(plaintext, null);
+        Log.info("RSA-HYBRID encrypt: " + plaintext.length + " -> " + ciphertext.length + " bytes");
+        Assert.assertArrayEquals(plaintext, ((DecryptKey) sk).decrypt(ciphertext, null));
+
+        // stream
+        ByteArrayOutputStream envelope = new ByteArrayOutputStream();
+        long count = ((RSAPublicKey) pk).encrypt(new ByteArrayInputStream(plaintext), envelope, null);
+        Assert.assertEquals(envelope.size(), count);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        count = ((RSAPrivateKey) sk).decrypt(new ByteArrayInputStream(envelope.toByteArray()), output, null);
+        Assert.assertEquals(plaintext.length, count);
+        Assert.assertArrayEquals(plaintext, output.toByteArray());
+
+        // tampered
+        ciphertext[ciphertext.length - 1] ^= 1;
+        Assert.assertNull(((DecryptKey) sk).decrypt(ciphertext, null));
+
+        // still signs like RSA
+        Assert.assertTrue(pk.verify(plaintext, sk.sign(plaintext)));
+    }
+
+    @Test
+    public void testVerificationCache() {
+        VerificationCache cache = new VerificationCache(16, 0);
+        VerificationCache origin = VerificationCache.shared;
+        VerificationCache.shared = cache;
+        try {
+            PrivateKey sk = PrivateKey.generate(AsymmetricAlgorithms.RSA);
+            PublicKey pk = sk.getPublicKey();
+            byte[] data = UTF8.encode("moky");
+            byte[] signature = sk.sign(data);
+            Assert.assertTrue(pk.verify(data, signature));
+            Assert.assertTrue(pk.verify(data, signature));
+            Assert.assertEquals(1, cache.getHitCount());
+            // failures are not cached
+            Assert.assertFalse(pk.verify(UTF8.encode("moky!"), signature));
+            Assert.assertFalse(pk.verify(UTF8.encode("moky!"), signature));
+            Assert.assertEquals(1, cache.size());
+            // other key with the same data & signature
+            PublicKey other = PrivateKey.generate(AsymmetricAlgorithms.RSA).getPublicKey();
+            Assert.assertFalse(other.verify(data, signature));
+            // same point on another curve is another key
+            PrivateKey eccKey = PrivateKey.generate(AsymmetricAlgorithms.ECC);
+            byte[] eccSignature = eccKey.sign(data);
+            Map<String, Object> info = new HashMap<>(eccKey.getPublicKey().toMap());
+            Assert.assertTrue(PublicKey.parse(info).verify(data, eccSignature));
+            info.put("curve", "secp256r1");
+            long hits = cache.getHitCount();
+            PublicKey.parse(info).verify(data, eccSignature);
+            Assert.assertEquals(hits, cache.getHitCount());
+            Log.info("verification cache: " + cache);
+        } finally {
+            VerificationCache.shared = origin;
+        }
+    }
+
+    @Test
+    public void testKeyMaterialEquals() {
+        PrivateKey sk1 = PrivateKey.generate(AsymmetricAlgorithms.RSA);
+        PrivateKey sk2 = PrivateKey.parse(new HashMap<>(sk1.toMap()));
+        Assert.assertNotSame(sk1, sk2);
+        Assert.assertEquals(sk1, sk2);
+        Assert.assertEquals(sk1.hashCode(), sk2.hashCode());
+
+        PublicKey pk1 = sk1.getPublicKey();
+        PublicKey pk2 = sk2.getPublicKey();
+        Assert.assertEquals(pk1, pk2);
+        Assert.assertEquals(pk1.hashCode(), pk2.hashCode());
+        Assert.assertTrue(pk1.matchSignKey(sk2));
+
+        PrivateKey other = PrivateKey.generate(AsymmetricAlgorithms.RSA);
+        Assert.assertNotEquals(sk1, other);
+        Assert.assertNotEquals(pk1, other.getPublicKey());
+        Assert.assertFalse(pk1.matchSignKey(other));
+
+        // the public key block in 'data' doesn't belong to the private key
+        Map<String, Object> info = new HashMap<>(sk1.toMap());
+        info.put("data", other.getPublicKey().toMap().get("data") + "\r\n" + sk1.toMap().get("data"));
+        PrivateKey mixed = PrivateKey.parse(info);
+        Assert.assertEquals(sk1, mixed);
+        Assert.assertTrue(pk1.matchSignKey(mixed));
+        Assert.assertFalse(other.getPublicKey().matchSignKey(mixed));
+
+        // a plain map never equals a key
+        Assert.assertNotEquals(sk1, sk1.toMap());
+        Assert.assertNotEquals(pk1, pk1.toMap());
+
+        int count = 1000;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; ++i) {
+            Assert.assertEquals(sk1, sk2);
+        }
+        Log.info("RSA key equals: " + ((System.nanoTime() - start) / count) + " ns/op");
+    }
+
+    @Test
+    public void testDerivedKeys() {
+        PrivateKey sk = PrivateKey.generate(AsymmetricAlgorithms.RSA);
+        // created once per key
+        Assert.assertSame(sk.getPublicKey(), sk.getPublicKey());
+        Assert.assertSame(sk.getData(), sk.getData());
+        PublicKey pk = sk.getPublicKey();
+        Assert.assertSame(pk.getData(), pk.getData());
+
+        int count = 10000;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; ++i) {
+            sk.getPublicKey().getData();
+        }
+        Log.info("RSA derived keys: " + ((System.nanoTime() - start) / count) + " ns/op");
+    }
+
+    @Test
+    public void testBatchDecrypt() {
+        RSAPrivateKey sk = (RSAPrivateKey) PrivateKey.generate(AsymmetricAlgorithms.RSA);
+        EncryptKey pk = (EncryptKey) sk.getPublicKey();
+        List<byte[]> ciphertexts = new ArrayList<>();
+        List<byte[]> payloads = new ArrayList<>();
+        for (int i = 0; i < 64; ++i) {
+            byte[] data = UTF8.encode("msg-" + i);
+            payloads.add(data);
+            ciphertexts.add(pk.encrypt(data, new HashMap<>()));
+        }
+        // broken item
+        ciphertexts.set(5, new byte[3]);
+
+        // measure the decryption, not the cache
+        DecryptionCache origin = DecryptionCache.shared;
+        DecryptionCache.shared = null;
+        try {
+            long start = System.currentTimeMillis();
+            List<BatchExecutor.Result<byte[]>> plaintexts = sk.decrypt(ciphertexts);
+            Log.info("batch decrypt " + ciphertexts.size() + " items: " + (System.currentTimeMillis() - start) + " ms");
+            Assert.assertEquals(ciphertexts.size(), plaintexts.size());
+            // the broken item carries its error
+            Assert.assertFalse(plaintexts.get(5).isSuccess());
+            Assert.assertNull(plaintexts.get(5).getValue());
+            Assert.assertNotNull(plaintexts.get(5).getError());
+            Log.info("broken item: " + plaintexts.get(5).getError());
+            for (int i = 0; i < plaintexts.size(); ++i) {
+                if (i != 5) {
+                    Assert.assertTrue(plaintexts.get(i).isSuccess());
+                    Assert.assertArrayEquals(payloads.get(i), plaintexts.get(i).getValue());
+                }
+            }
+        } finally {
+            DecryptionCache.shared = origin;
+        }
+
+        BatchExecutor single = new BatchExecutor(Runnable::run, 1);
+        long start = System.currentTimeMillis();
+        List<BatchExecutor.Result<byte[]>> signatures = sk.sign(payloads, single);
+        Log.info("sign " + payloads.size() + " items on one thread: " + (System.currentTimeMillis() - start) + " ms");
+        start = System.currentTimeMillis();
+        signatures = sk.sign(payloads);
+        Log.info("batch sign " + payloads.size() + " items: " + (System.currentTimeMillis() - start) + " ms");
+        PublicKey verifyKey = sk.getPublicKey();
+        for (int i = 0; i < payloads.size(); ++i) {
+            Assert.assertTrue(verifyKey.verify(payloads.get(i), signatures.get(i).getValue()));
+        }
+    }
+
+    @Test
+    public void testParallelGenerator() throws Exception {
+        ParallelRSAGenerator origin = RSAPrivateKey.getGenerator();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int bits : new int[]{2048, 3072}) {
+                RSAPrivateKey.setGenerator(null);
+                long start = System.currentTimeMillis();
+                RSAPrivateKey.newKey(bits);
+                long jcaCost = System.currentTimeMillis() - start;
+
+                RSAPrivateKey.setGenerator(new ParallelRSAGenerator(executor, 4));
+                start = System.currentTimeMillis();
+                PrivateKey sk = RSAPrivateKey.newKey(bits);
+                long cost = System.currentTimeMillis() - start;
+                Log.info("RSA-" + bits + " generate: parallel " + cost + " ms, JCA " + jcaCost + " ms");
+
+                // PEM encoded & parsed
+                sk = PrivateKey.parse(new HashMap<>(sk.toMap()));
+                PublicKey pk = sk.getPublicKey();
+                byte[] data = UTF8.encode("moky");
+                Assert.assertTrue(pk.verify(data, sk.sign(data)));
+                byte[] ciphertext = ((EncryptKey) pk).encrypt(data, new HashMap<>());
+                Assert.assertEquals(bits / 8, ciphertext.length);
+                Assert.assertArrayEquals(data, ((DecryptKey) sk).decrypt(ciphertext, new HashMap<>()));
+            }
+        } finally {
+            RSAPrivateKey.setGenerator(origin);
+            executor.shutdown();
+        }
+    }
 }
@@ -25,8 +25,13 @@
  */
 package chat.dim.crypto;
 
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Map;
 
+import chat.dim.data.Comparator;
 import chat.dim.ext.GeneralCryptoHelper;
 import chat.dim.ext.SharedCryptoExtensions;
 import chat.dim.protocol.AsymmetricKey;
@@ -37,15 +42,110 @@ import chat.dim.type.Dictionary;
 
 public abstract class BaseAsymmetricKey extends Dictionary implements AsymmetricKey {
 
+    // public key material, calculated when first compared
+    private byte[] keyMaterial = null;
+
+    // placeholder for key types without key material
+    private static final byte[] NO_MATERIAL = new byte[0];
+
     protected BaseAsymmetricKey(Map<String, Object> dictionary) {
         super(dictionary);
     }
 
+    /**
+     *  Keys are equal only when they have the same key type and key material
+     *  (or the same inner map if material not supported), so equal keys always
+     *  have the same hash code; use 'matchSignKey()' for other key types.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            // same object
+            return true;
+        } else if (other == null || other.getClass() != getClass()) {
+            // key type not matched
+            return false;
+        }
+        Boolean matched = keyMaterialEquals(other, this);
+        if (matched != null) {
+            return matched;
+        }
+        // compare inner map
+        return Comparator.mapEquals(toMap(), ((BaseAsymmetricKey) other).toMap());
+    }
+
+    /**
+     *  Hash code from key material, or from the inner map if not supported
+     */
+    @Override
+    public int hashCode() {
+        byte[] material = getKeyMaterial();
+        return material == null ? toMap().hashCode() : Arrays.hashCode(material);
+    }
+
     @Override
     public String getAlgorithm() {
         return getKeyAlgorithm(toMap());
     }
 
+    /**
+     *  Get public key material (algorithm + public numbers),
+     *  a private key has the same material with its public key
+     *
+     * @return null when the key type doesn't support it
+     */
+    protected byte[] getKeyMaterial() {
+        byte[] material = keyMaterial;
+        if (material == null) {
+            material = createKeyMaterial();
+            keyMaterial = material == null ? NO_MATERIAL : material;
+        }
+        return material == NO_MATERIAL ? null : material;
+    }
+
+    /**
+     *  Override to compare keys by material instead of signing
+     *
+     * @return null to compare by signature
+     */
+    protected byte[] createKeyMaterial() {
+        return null;
+    }
+
+    /**
+     *  Build key material from algorithm and public numbers
+     *  (e.g. RSA modulus & exponent, ECC point)
+     */
+    protected static byte[] createKeyMaterial(String algorithm, BigInteger... values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeField(out, algorithm.getBytes(StandardCharsets.UTF_8));
+        for (BigInteger item : values) {
+            writeField(out, item.toByteArray());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     *  Build key material from algorithm, curve name and public numbers
+     *  (e.g. ECC point)
+     */
+    protected static byte[] createKeyMaterial(String algorithm, String curve, BigInteger... values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeField(out, algorithm.getBytes(StandardCharsets.UTF_8));
+        writeField(out, curve.getBytes(StandardCharsets.UTF_8));
+        for (BigInteger item : values) {
+            writeField(out, item.toByteArray());
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeField(ByteArrayOutputStream out, byte[] data) {
+        int len = data.length;
+        out.write(len >>> 8);
+        out.write(len);
+        out.write(data, 0, len);
+    }
+
     //
     //  Conveniences
     //
@@ -56,6 +156,11 @@ public abstract class BaseAsymmetricKey extends Dictionary implements Asymmetric
     }
 
     public static boolean matchSignKey(SignKey sKey, VerifyKey pKey) {
+        Boolean matched = keyMaterialEquals(sKey, pKey);
+        if (matched != null) {
+            return matched;
+        }
+        // foreign key type, compare by signature
         return GeneralCryptoHelper.matchAsymmetricKeys(sKey, pKey);
     }
 
@@ -64,8 +169,28 @@ public abstract class BaseAsymmetricKey extends Dictionary implements Asymmetric
             // same object
             return true;
         }
+        Boolean matched = keyMaterialEquals(a, b);
+        if (matched != null) {
+            return matched;
+        }
         // compare by signature
         return matchSignKey(a, b.getPublicKey());
     }
 
+    /**
+     *  Compare public key material of two keys
+     *
+     * @return null when any key doesn't support key material
+     */
+    public static Boolean keyMaterialEquals(Object a, Object b) {
+        if (a instanceof BaseAsymmetricKey && b instanceof BaseAsymmetricKey) {
+            byte[] m1 = ((BaseAsymmetricKey) a).getKeyMaterial();
+            byte[] m2 = ((BaseAsymmetricKey) b).getKeyMaterial();
+            if (m1 != null && m2 != null) {
+                return Arrays.equals(m1, m2);
+            }
+        }
+        return null;
+    }
+
 }
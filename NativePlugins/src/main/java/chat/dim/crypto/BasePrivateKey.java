@@ -25,11 +25,12 @@
  */
 package chat.dim.crypto;
 
+import java.security.SignatureException;
+import java.util.List;
 import java.util.Map;
 
-import chat.dim.data.Comparator;
 import chat.dim.protocol.PrivateKey;
-import chat.dim.type.Mapper;
+import chat.dim.utils.BatchExecutor;
 
 public abstract class BasePrivateKey extends BaseAsymmetricKey implements PrivateKey {
 
@@ -37,21 +38,24 @@ public abstract class BasePrivateKey extends BaseAsymmetricKey implements Privat
         super(dictionary);
     }
 
-    @Override
-    public boolean equals(Object other) {
-        if (other == null) {
-            return isEmpty();
-        } else if (other instanceof Mapper) {
-            if (this == other) {
-                // same object
-                return true;
-            } else if (other instanceof PrivateKey) {
-                return privateKeyEquals((PrivateKey) other, this);
+    /**
+     *  Sign all payloads with the shared batch executor
+     *
+     * @param payloads - data to be signed
+     * @return signature results in payloads order, with the error for the failed ones
+     */
+    public List<BatchExecutor.Result<byte[]>> sign(List<byte[]> payloads) {
+        return sign(payloads, BatchExecutor.shared);
+    }
+
+    public List<BatchExecutor.Result<byte[]>> sign(List<byte[]> payloads, BatchExecutor executor) {
+        return executor.run(payloads.size(), index -> {
+            byte[] signature = sign(payloads.get(index));
+            if (signature == null) {
+                throw new SignatureException("failed to sign payload: " + index);
             }
-            // compare inner map
-            other = ((Mapper) other).toMap();
-        }
-        return other instanceof Map && Comparator.mapEquals(toMap(), (Map<?, ?>) other);
+            return signature;
+        });
     }
 
 }
@@ -0,0 +1,102 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import chat.dim.protocol.EncryptKey;
+import chat.dim.utils.BatchExecutor;
+
+/**
+ *  Batch Encrypter
+ *  <p>
+ *      Encrypt one payload (e.g. a message key) for many recipients at once,
+ *      the keys are processed by the batch executor concurrently;
+ *      the results are returned in recipient order.
+ *  </p>
+ *  <p>
+ *      RSA public keys keep one cipher per thread,
+ *      so the workers reuse their ciphers for all keys in a slice.
+ *  </p>
+ */
+public class BatchEncrypter {
+
+    // keys fewer than this will be processed on the calling thread
+    public static int MIN_PARALLEL_KEYS = 8;
+
+    private final BatchExecutor executor;
+
+    public BatchEncrypter(BatchExecutor executor) {
+        super();
+        this.executor = executor;
+    }
+
+    public BatchEncrypter(Executor executor, int parallelism) {
+        this(new BatchExecutor(executor, parallelism));
+    }
+
+    public BatchEncrypter() {
+        this(BatchExecutor.shared);
+    }
+
+    /**
+     *  Encrypt plaintext with all keys
+     *
+     * @param plaintext - data to be encrypted
+     * @param keys      - recipients' keys
+     * @return ciphertext results in keys order, with the error for the failed ones
+     */
+    public List<BatchExecutor.Result<byte[]>> encrypt(byte[] plaintext, List<? extends EncryptKey> keys) {
+        return encrypt(plaintext, keys, null);
+    }
+
+    /**
+     *  Encrypt plaintext with all keys
+     *
+     * @param plaintext - data to be encrypted
+     * @param keys      - recipients' keys
+     * @param extras    - extra params for each key (same size as keys),
+     *                    null to use a new empty map for each key
+     * @return ciphertext results in keys order, with the error for the failed ones
+     */
+    public List<BatchExecutor.Result<byte[]>> encrypt(byte[] plaintext, List<? extends EncryptKey> keys,
+                                                      List<Map<String, Object>> extras) {
+        assert extras == null || extras.size() == keys.size() : "extras not match keys: " + extras.size();
+        return executor.run(keys.size(), MIN_PARALLEL_KEYS, index -> {
+            Map<String, Object> extra = extras == null ? new HashMap<>() : extras.get(index);
+            byte[] ciphertext = keys.get(index).encrypt(plaintext, extra);
+            if (ciphertext == null) {
+                throw new GeneralSecurityException("failed to encrypt for key: " + index);
+            }
+            return ciphertext;
+        });
+    }
+
+}
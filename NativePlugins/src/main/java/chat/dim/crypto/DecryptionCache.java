@@ -0,0 +1,146 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import chat.dim.utils.LRUCache;
+
+/**
+ *  Cache for results of private key decryption
+ *
+ *  <p>
+ *      Senders usually reuse the same wrapped session key for many messages,
+ *      so the plaintext can be cached by digest of (key id + ciphertext) to
+ *      skip the expensive private key operations.
+ *      Cached values are copied in and out, and wiped when leaving the cache.
+ *  </p>
+ *  <p>
+ *      Disabled by default, as the plaintexts (session keys) stay in memory
+ *      for the life span of the cache.
+ *  </p>
+ *
+ *  <blockquote><pre>
+ *  Usage:
+ *      DecryptionCache.shared = new DecryptionCache(1024, 3600 * 1000);
+ *  </pre></blockquote>
+ */
+public class DecryptionCache {
+
+    /**
+     *  Shared cache for all decrypt keys, null means disabled
+     */
+    public static DecryptionCache shared = null;
+
+    private final LRUCache<ByteBuffer, byte[]> results;
+
+    /**
+     *  Create decryption cache
+     *
+     * @param capacity - max count of results
+     * @param lifeSpan - milliseconds for each result to live
+     */
+    public DecryptionCache(int capacity, long lifeSpan) {
+        super();
+        results = new LRUCache<>(capacity, lifeSpan, (index, plaintext) -> {
+            // wipe the evicted plaintext
+            Arrays.fill(plaintext, (byte) 0);
+        });
+    }
+
+    // one engine per thread
+    private static final ThreadLocal<MessageDigest> engines = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private static ByteBuffer getIndex(byte[] keyId, byte[] ciphertext) {
+        MessageDigest md = engines.get();
+        md.reset();
+        // length prefixed, so the fields cannot be shifted into each other
+        int length = keyId.length;
+        md.update((byte) (length >>> 24));
+        md.update((byte) (length >>> 16));
+        md.update((byte) (length >>> 8));
+        md.update((byte) length);
+        md.update(keyId);
+        md.update(ciphertext);
+        return ByteBuffer.wrap(md.digest());
+    }
+
+    /**
+     *  Get cached plaintext
+     *
+     * @param keyId      - public identity of the decrypt key (e.g. padding + encoded public key)
+     * @param ciphertext - encrypted data
+     * @return copy of plaintext, null on not found
+     */
+    public byte[] get(byte[] keyId, byte[] ciphertext) {
+        // copy inside the cache lock, before an eviction in another thread wipes it
+        return results.get(getIndex(keyId, ciphertext), byte[]::clone);
+    }
+
+    /**
+     *  Cache plaintext
+     *
+     * @param keyId      - public identity of the decrypt key (e.g. padding + encoded public key)
+     * @param ciphertext - encrypted data
+     * @param plaintext  - decrypted data
+     */
+    public void put(byte[] keyId, byte[] ciphertext, byte[] plaintext) {
+        results.put(getIndex(keyId, ciphertext), plaintext.clone());
+    }
+
+    /**
+     *  Remove expired results
+     */
+    public int purge() {
+        return results.purge();
+    }
+
+    /**
+     *  Remove (and wipe) all results
+     */
+    public void clear() {
+        results.clear();
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    @Override
+    public String toString() {
+        return results.toString();
+    }
+
+}
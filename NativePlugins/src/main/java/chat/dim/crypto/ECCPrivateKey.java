@@ -51,14 +51,20 @@ import chat.dim.utils.CryptoUtils;
  */
 public final class ECCPrivateKey extends BasePrivateKey {
 
-    private byte[] privateKeyData;
-    private byte[] publicKeyData;
+    private volatile byte[] privateKeyData;
+    private volatile byte[] publicKeyData;
+
+    // derived from the key data when first used, then shared by all callers
+    private volatile TransportableData data;
+    private volatile PublicKey pubKey;
 
     public ECCPrivateKey(Map<String, Object> dictionary) {
         super(dictionary);
         // lazy load
         privateKeyData = null;
         publicKeyData = null;
+        data = null;
+        pubKey = null;
     }
 
     public static ECCPrivateKey newKey() {
@@ -93,26 +99,28 @@ public final class ECCPrivateKey extends BasePrivateKey {
     }
 
     private void copyPublicKeyData(byte[] keyBuffer) {
-        publicKeyData = new byte[65];
-        publicKeyData[0] = 0x04;
-        System.arraycopy(keyBuffer, 0, publicKeyData, 1, 64);
+        byte[] pubKey = new byte[65];
+        pubKey[0] = 0x04;
+        System.arraycopy(keyBuffer, 0, pubKey, 1, 64);
+        publicKeyData = pubKey;
     }
 
     private void copyPrivateKeyData(byte[] keyPair) {
-        privateKeyData = new byte[32];
-        System.arraycopy(keyPair, 64, privateKeyData, 0, 32);
+        byte[] priKey = new byte[32];
+        System.arraycopy(keyPair, 64, priKey, 0, 32);
+        privateKeyData = priKey;
     }
 
-    @Override
-    public TransportableData getData() {
-        if (privateKeyData == null) {
+    private byte[] getPrivateKeyData() {
+        byte[] priKey = privateKeyData;
+        if (priKey == null) {
             String pem = getString("data");
             if (pem == null) {
                 throw new AssertionError("ECC private key data not found");
             }
             if (pem.length() == 64) {
                 // decode from Hex string
-                privateKeyData = Hex.decode(pem);
+                priKey = Hex.decode(pem);
             } else {
                 // parse PEM file content
                 byte[] data = PEM.decodePublicKeyData(pem, "ECC");
@@ -133,42 +141,79 @@ public final class ECCPrivateKey extends BasePrivateKey {
                 if (data != null) {
                     // PKCS#8
                     assert data.length == 135;
-                    privateKeyData = new byte[32];
-                    System.arraycopy(data, 33, privateKeyData, 0, 32);
+                    priKey = new byte[32];
+                    System.arraycopy(data, 33, priKey, 0, 32);
                 }
             }
+            privateKeyData = priKey;
         }
-        return PlainData.create(privateKeyData);
+        return priKey;
     }
 
     @Override
-    public PublicKey getPublicKey() {
-        if (publicKeyData == null) {
-            byte[] priKey = getData().getBytes();
+    public TransportableData getData() {
+        TransportableData ted = data;
+        if (ted == null) {
+            ted = PlainData.create(getPrivateKeyData());
+            data = ted;
+        }
+        return ted;
+    }
+
+    private byte[] getPublicKeyData() {
+        byte[] pubKey = publicKeyData;
+        if (pubKey == null) {
+            byte[] priKey = getPrivateKeyData();
             if (priKey == null) {
                 throw new NullPointerException("ECC private key not found");
             }
-            byte[] pubKey = Secp256k1.computePublicKey(priKey);
-            copyPublicKeyData(pubKey);
-            if (publicKeyData == null) {
+            copyPublicKeyData(Secp256k1.computePublicKey(priKey));
+            pubKey = publicKeyData;
+            if (pubKey == null) {
                 throw new NullPointerException("failed to get public key from private key");
             }
         }
-        // store public key in X.509 format
-        String pem = Hex.encode(publicKeyData);
-
-        Map<String, Object> keyInfo = new HashMap<>();
-        keyInfo.put("algorithm", getAlgorithm());    // AsymmetricAlgorithms.ECC
-        keyInfo.put("data", pem);
-        keyInfo.put("curve", getCurveName());        // secp256k1
-        keyInfo.put("digest", "SHA256");
-        return new ECCPublicKey(keyInfo);
+        return pubKey;
+    }
+
+    @Override
+    protected byte[] createKeyMaterial() {
+        // derive the point from the private key itself,
+        // the public key block in 'data' may not belong to it
+        byte[] priKey = getPrivateKeyData();
+        byte[] derived = priKey == null ? null : Secp256k1.computePublicKey(priKey);
+        if (derived == null || derived.length != 64) {
+            // compare by signature
+            return null;
+        }
+        byte[] point = new byte[65];
+        point[0] = 0x04;
+        System.arraycopy(derived, 0, point, 1, 64);
+        return ECCPublicKey.createPointMaterial(getAlgorithm(), getCurveName(), point);
+    }
+
+    @Override
+    public PublicKey getPublicKey() {
+        PublicKey key = pubKey;
+        if (key == null) {
+            // store public key in X.509 format
+            String pem = Hex.encode(getPublicKeyData());
+
+            Map<String, Object> keyInfo = new HashMap<>();
+            keyInfo.put("algorithm", getAlgorithm());    // AsymmetricAlgorithms.ECC
+            keyInfo.put("data", pem);
+            keyInfo.put("curve", getCurveName());        // secp256k1
+            keyInfo.put("digest", "SHA256");
+            key = new ECCPublicKey(keyInfo);
+            pubKey = key;
+        }
+        return key;
     }
 
     @Override
     public byte[] sign(byte[] data) {
         byte[] hash = SHA256.digest(data);
-        return Secp256k1.sign(privateKeyData, hash);
+        return Secp256k1.sign(getPrivateKeyData(), hash);
     }
 
 }
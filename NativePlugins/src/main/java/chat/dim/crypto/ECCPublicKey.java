@@ -25,6 +25,8 @@
  */
 package chat.dim.crypto;
 
+import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Map;
 
 import chat.dim.digest.SHA256;
@@ -33,6 +35,7 @@ import chat.dim.format.Hex;
 import chat.dim.format.PEM;
 import chat.dim.format.PlainData;
 import chat.dim.protocol.TransportableData;
+import chat.dim.utils.CryptoUtils;
 
 /**
  *  ECC Public Key
@@ -47,16 +50,42 @@ import chat.dim.protocol.TransportableData;
  */
 public final class ECCPublicKey extends BasePublicKey {
 
-    private byte[] publicKeyData;
+    private volatile byte[] publicKeyData;
+
+    // wrapped key data, created when first used
+    private volatile TransportableData data;
 
     public ECCPublicKey(Map<String, Object> dictionary) {
         super(dictionary);
         // lazy load
         publicKeyData = null;
+        data = null;
+    }
+
+    /**
+     *  Create key for a dictionary with the same 'data' and 'curve' as the
+     *  compact key (e.g. from the key cache), without decoding the PEM again
+     *
+     * @param dictionary - key info
+     * @param compact    - raw key data (uncompressed point)
+     */
+    public ECCPublicKey(Map<String, Object> dictionary, CompactKey compact) {
+        super(dictionary);
+        publicKeyData = compact.getData();
+        data = null;
     }
 
     @Override
     public TransportableData getData() {
+        TransportableData ted = data;
+        if (ted == null) {
+            ted = PlainData.create(getPointData());
+            data = ted;
+        }
+        return ted;
+    }
+
+    private byte[] getPointData() {
         byte[] data = publicKeyData;
         if (data == null) {
             String pem = getString("data");
@@ -85,11 +114,39 @@ public final class ECCPublicKey extends BasePublicKey {
             }
             publicKeyData = data;
         }
-        return PlainData.create(data);
+        return data;
+    }
+
+    @Override
+    protected byte[] createKeyMaterial() {
+        return createPointMaterial(getAlgorithm(), getCurveName(), getPointData());
+    }
+
+    private String getCurveName() {
+        return getString("curve", CryptoUtils.SECP256K1);
+    }
+
+    // curve name, affine X and the parity of Y (same as the compressed point)
+    static byte[] createPointMaterial(String algorithm, String curve, byte[] point) {
+        BigInteger x;
+        boolean odd;
+        if (point.length == 65) {
+            // uncompressed: 04 + X + Y
+            x = new BigInteger(1, Arrays.copyOfRange(point, 1, 33));
+            odd = (point[64] & 1) == 1;
+        } else if (point.length == 33) {
+            // compressed: 02/03 + X
+            x = new BigInteger(1, Arrays.copyOfRange(point, 1, 33));
+            odd = point[0] == 0x03;
+        } else {
+            assert false : "ECC point data error: " + point.length;
+            return null;
+        }
+        return createKeyMaterial(algorithm, curve, x, odd ? BigInteger.ONE : BigInteger.ZERO);
     }
 
     private byte[] getPubKey() {
-        byte[] data = getData().getBytes();
+        byte[] data = getPointData();
         if (data.length == 65) {
             byte[] buffer = new byte[64];
             System.arraycopy(data, 1, buffer, 0, 64);
@@ -100,6 +157,10 @@ public final class ECCPublicKey extends BasePublicKey {
 
     @Override
     public boolean verify(byte[] data, byte[] signature) {
+        return verify(data, signature, this::verifySignature);
+    }
+
+    private boolean verifySignature(byte[] data, byte[] signature) {
         byte[] hash = SHA256.digest(data);
         return Secp256k1.verify(getPubKey(), hash, signature) != 0;
     }
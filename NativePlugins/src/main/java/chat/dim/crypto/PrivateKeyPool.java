@@ -0,0 +1,169 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import chat.dim.protocol.PrivateKey;
+
+/**
+ *  Private Key Pool
+ *  <p>
+ *      Key pairs are generated in advance by low-priority daemon workers,
+ *      up to the pool depth; taking a key from an empty pool falls back to
+ *      generating it on the caller's thread.
+ *  </p>
+ *
+ *  <blockquote><pre>
+ *  Usage:
+ *      registerRSAKeyFactories(PrivateKeyPool.newRSAPool(8));
+ *  </pre></blockquote>
+ */
+public class PrivateKeyPool {
+
+    public interface Generator {
+
+        PrivateKey generate() throws GeneralSecurityException;
+    }
+
+    private final Generator generator;
+    private final int depth;
+
+    private final ConcurrentLinkedQueue<PrivateKey> keys = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger count = new AtomicInteger(0);
+
+    private final Object lock = new Object();
+    private volatile boolean running = true;
+
+    /**
+     *  Create key pool and start the workers
+     *
+     * @param name      - worker thread name
+     * @param generator - key generator
+     * @param depth     - max count of keys to keep
+     * @param workers   - count of worker threads
+     */
+    public PrivateKeyPool(String name, Generator generator, int depth, int workers) {
+        super();
+        assert depth > 0 && workers > 0 : "key pool params error: " + depth + ", " + workers;
+        this.generator = generator;
+        this.depth = depth;
+        for (int i = 0; i < workers; ++i) {
+            Thread thread = new Thread(this::refill, name + "-" + i);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+    }
+
+    public PrivateKeyPool(String name, Generator generator, int depth) {
+        this(name, generator, depth, 1);
+    }
+
+    public static PrivateKeyPool newRSAPool(int depth) {
+        return new PrivateKeyPool("RSAKeyPool", RSAPrivateKey::newKey, depth);
+    }
+
+    public static PrivateKeyPool newECCPool(int depth) {
+        return new PrivateKeyPool("ECCKeyPool", ECCPrivateKey::newKey, depth);
+    }
+
+    /**
+     *  Take a key from the pool, or generate one if the pool is empty
+     *
+     * @return null on error
+     */
+    public PrivateKey take() {
+        PrivateKey key = keys.poll();
+        if (key != null) {
+            count.decrementAndGet();
+            // wake up the workers to refill
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+            return key;
+        }
+        // pool is empty, generate inline
+        return generate();
+    }
+
+    /**
+     *  Count of keys in the pool (including the ones being generated)
+     */
+    public int size() {
+        return count.get();
+    }
+
+    /**
+     *  Stop the workers
+     */
+    public void stop() {
+        running = false;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    private PrivateKey generate() {
+        try {
+            return generator.generate();
+        } catch (GeneralSecurityException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void refill() {
+        PrivateKey key;
+        while (running) {
+            // reserve a place in the pool
+            if (count.incrementAndGet() > depth) {
+                count.decrementAndGet();
+                synchronized (lock) {
+                    try {
+                        // check again after taken keys
+                        if (running && count.get() >= depth) {
+                            lock.wait();
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                continue;
+            }
+            key = generate();
+            if (key == null) {
+                count.decrementAndGet();
+                // generator error, stop this worker
+                return;
+            }
+            keys.offer(key);
+        }
+    }
+
+}
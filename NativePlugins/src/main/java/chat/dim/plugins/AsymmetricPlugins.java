@@ -28,8 +28,11 @@ package chat.dim.plugins;
 import java.security.NoSuchAlgorithmException;
 import java.util.Map;
 
+import chat.dim.crypto.CompactKey;
 import chat.dim.crypto.ECCPrivateKey;
 import chat.dim.crypto.ECCPublicKey;
+import chat.dim.crypto.PrivateKeyPool;
+import chat.dim.crypto.PublicKeyCache;
 import chat.dim.crypto.RSAPrivateKey;
 import chat.dim.crypto.RSAPublicKey;
 import chat.dim.protocol.AsymmetricAlgorithms;
@@ -43,12 +46,25 @@ public interface AsymmetricPlugins {
 
     // protected
     default void registerRSAKeyFactories() {
+        registerRSAKeyFactories(null);
+    }
+
+    /**
+     *  Register RSA key factories
+     *
+     * @param pool - pool for generating private keys, null to generate inline
+     */
+    // protected
+    default void registerRSAKeyFactories(PrivateKeyPool pool) {
 
         // RSA Private Key
         PrivateKey.Factory rsaPri = new PrivateKey.Factory() {
 
             @Override
             public PrivateKey generatePrivateKey() {
+                if (pool != null) {
+                    return pool.take();
+                }
                 try {
                     return RSAPrivateKey.newKey();
                 } catch (NoSuchAlgorithmException e) {
@@ -85,23 +101,96 @@ public interface AsymmetricPlugins {
                     assert false : "RSA key error: " + key;
                     return null;
                 }
-                return new RSAPublicKey(key);
+                PublicKeyCache cache = PublicKeyCache.shared;
+                if (cache == null) {
+                    return new RSAPublicKey(key);
+                }
+                CompactKey cached = cache.get(key);
+                if (cached != null && !AsymmetricAlgorithms.ECC.equals(cached.getAlgorithm())) {
+                    // new key object for this dictionary, built from the raw key data
+                    return new RSAPublicKey(key, cached);
+                }
+                RSAPublicKey pKey = new RSAPublicKey(key);
+                try {
+                    // decode key data before caching it
+                    cache.put(key, CompactKey.from(pKey));
+                } catch (IllegalArgumentException e) {
+                    // key data error, don't cache it
+                    e.printStackTrace();
+                }
+                return pKey;
             }
         };
         PublicKey.setFactory(AsymmetricAlgorithms.RSA, rsaPub);
         PublicKey.setFactory(CryptoUtils.RSA_SHA256, rsaPub);
         PublicKey.setFactory(CryptoUtils.RSA_ECB_PKCS1, rsaPub);
+        PublicKey.setFactory(CryptoUtils.RSA_OAEP, rsaPub);
+        PublicKey.setFactory(CryptoUtils.RSA_PSS, rsaPub);
+
+        // RSA-OAEP / RSA-PSS Private Key
+        registerRSAKeyFactory(CryptoUtils.RSA_OAEP, 2048);
+        registerRSAKeyFactory(CryptoUtils.RSA_PSS, 2048);
+
+    }
+
+    /**
+     *  Register private key factory for RSA-OAEP/RSA-PSS,
+     *  call it again with 3072 for stronger new keys
+     *
+     * @param algorithm  - CryptoUtils.RSA_OAEP, CryptoUtils.RSA_PSS
+     * @param sizeInBits - size of generated keys
+     */
+    // protected
+    default void registerRSAKeyFactory(String algorithm, int sizeInBits) {
+
+        PrivateKey.setFactory(algorithm, new PrivateKey.Factory() {
+
+            @Override
+            public PrivateKey generatePrivateKey() {
+                try {
+                    return RSAPrivateKey.newKey(algorithm, sizeInBits);
+                } catch (NoSuchAlgorithmException e) {
+                    e.printStackTrace();
+                    return null;
+                }
+            }
+
+            @Override
+            public PrivateKey parsePrivateKey(Map<String, Object> key) {
+                // check 'data', 'algorithm'
+                if (key.get("data") == null || key.get("algorithm") == null) {
+                    // key.data should not be empty
+                    // key.algorithm should not be empty
+                    assert false : algorithm + " key error: " + key;
+                    return null;
+                }
+                return new RSAPrivateKey(key);
+            }
+        });
 
     }
 
     // protected
     default void registerECCKeyFactories() {
+        registerECCKeyFactories(null);
+    }
+
+    /**
+     *  Register ECC key factories
+     *
+     * @param pool - pool for generating private keys, null to generate inline
+     */
+    // protected
+    default void registerECCKeyFactories(PrivateKeyPool pool) {
 
         // ECC Private Key
         PrivateKey.Factory eccPri = new PrivateKey.Factory() {
 
             @Override
             public PrivateKey generatePrivateKey() {
+                if (pool != null) {
+                    return pool.take();
+                }
                 return ECCPrivateKey.newKey();
             }
 
@@ -132,7 +221,24 @@ public interface AsymmetricPlugins {
                     assert false : "ECC key error: " + key;
                     return null;
                 }
-                return new ECCPublicKey(key);
+                PublicKeyCache cache = PublicKeyCache.shared;
+                if (cache == null) {
+                    return new ECCPublicKey(key);
+                }
+                CompactKey cached = cache.get(key);
+                if (cached != null && AsymmetricAlgorithms.ECC.equals(cached.getAlgorithm())) {
+                    // new key object for this dictionary, built from the raw key data
+                    return new ECCPublicKey(key, cached);
+                }
+                ECCPublicKey pKey = new ECCPublicKey(key);
+                try {
+                    // decode key data before caching it
+                    cache.put(key, CompactKey.from(pKey));
+                } catch (IllegalArgumentException e) {
+                    // key data error, don't cache it
+                    e.printStackTrace();
+                }
+                return pKey;
             }
         };
         PublicKey.setFactory(AsymmetricAlgorithms.ECC, eccPub);
@@ -25,9 +25,11 @@
  */
 package chat.dim.plugins;
 
+import org.bouncycastle.crypto.digests.Blake2bDigest;
 import org.bouncycastle.crypto.digests.KeccakDigest;
 import org.bouncycastle.crypto.digests.RIPEMD160Digest;
 
+import chat.dim.digest.BLAKE2B256;
 import chat.dim.digest.KECCAK256;
 import chat.dim.digest.MessageDigester;
 import chat.dim.digest.RIPEMD160;
@@ -41,9 +43,14 @@ public interface MessageDigestPlugins {
 
         // RipeMD-160
         RIPEMD160.digester = new MessageDigester() {
+
+            // one engine per thread
+            private final ThreadLocal<RIPEMD160Digest> engines = ThreadLocal.withInitial(RIPEMD160Digest::new);
+
             @Override
             public byte[] digest(byte[] data) {
-                RIPEMD160Digest digest = new RIPEMD160Digest();
+                RIPEMD160Digest digest = engines.get();
+                digest.reset();
                 digest.update(data, 0, data.length);
                 byte[] out = new byte[20];
                 digest.doFinal(out, 0);
@@ -58,9 +65,36 @@ public interface MessageDigestPlugins {
 
         // Keccak-256
         KECCAK256.digester = new MessageDigester() {
+
+            // one engine per thread
+            private final ThreadLocal<KeccakDigest> engines = ThreadLocal.withInitial(() -> new KeccakDigest(256));
+
+            @Override
+            public byte[] digest(byte[] data) {
+                KeccakDigest digest = engines.get();
+                digest.reset();
+                digest.update(data, 0, data.length);
+                byte[] out = new byte[digest.getDigestSize()];
+                digest.doFinal(out, 0);
+                return out;
+            }
+        };
+
+    }
+
+    // protected
+    default void registerBlake2bDigester() {
+
+        // BLAKE2b-256
+        BLAKE2B256.digester = new MessageDigester() {
+
+            // one engine per thread
+            private final ThreadLocal<Blake2bDigest> engines = ThreadLocal.withInitial(() -> new Blake2bDigest(256));
+
             @Override
             public byte[] digest(byte[] data) {
-                KeccakDigest digest = new KeccakDigest(256);
+                Blake2bDigest digest = engines.get();
+                digest.reset();
                 digest.update(data, 0, data.length);
                 byte[] out = new byte[digest.getDigestSize()];
                 digest.doFinal(out, 0);
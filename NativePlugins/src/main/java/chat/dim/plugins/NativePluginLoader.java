@@ -100,6 +100,8 @@ public class NativePluginLoader implements JsonCoderPlugins, MessageDigestPlugin
 
         registerKeccak256Digester();
 
+        registerBlake2bDigester();
+
     }
 
     /**
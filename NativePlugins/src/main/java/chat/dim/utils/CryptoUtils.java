@@ -25,6 +25,24 @@
  */
 package chat.dim.utils;
 
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PSource;
+import java.math.BigInteger;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.util.HashMap;
+import java.util.Map;
+
 public final class CryptoUtils {
     private CryptoUtils() {
         throw new AssertionError("Utility class cannot be instantiated");
@@ -41,4 +59,223 @@ public final class CryptoUtils {
     public final static String RSA_SHA256 = "SHA256withRSA";
     public final static String RSA_ECB_PKCS1 = "RSA/ECB/PKCS1Padding";
 
+    public final static String RSA_OAEP = "RSA-OAEP";  // RSA key, encrypt with OAEP (SHA-256)
+    public final static String RSA_PSS = "RSA-PSS";    // RSA key, sign with PSS (SHA-256)
+
+    public final static String RSA_ECB_OAEP = "RSA/ECB/OAEPPadding";
+    public final static String RSA_PSS_SHA256 = "RSASSA-PSS";
+
+    // SHA-256 for both label & MGF1, the MGF1 digest of "OAEPWithSHA-256AndMGF1Padding"
+    // is not the same in all providers
+    private static final OAEPParameterSpec OAEP_SHA256 = new OAEPParameterSpec("SHA-256", "MGF1",
+            MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT);
+    // SHA-256 for both message & MGF1, salt length 32
+    private static final PSSParameterSpec PSS_SHA256 = new PSSParameterSpec("SHA-256", "MGF1",
+            MGF1ParameterSpec.SHA256, 32, 1);
+
+    /**
+     *  Get cipher transformation for RSA key algorithm
+     *
+     * @param algorithm - "RSA", "RSA-OAEP", "RSA-PSS"
+     * @return "RSA/ECB/OAEPPadding" for RSA-OAEP, else "RSA/ECB/PKCS1Padding"
+     */
+    public static String getRSACipherAlgorithm(String algorithm) {
+        return RSA_OAEP.equals(algorithm) ? RSA_ECB_OAEP : RSA_ECB_PKCS1;
+    }
+
+    /**
+     *  Get signature algorithm for RSA key algorithm
+     *
+     * @param algorithm - "RSA", "RSA-OAEP", "RSA-PSS"
+     * @return "RSASSA-PSS" for RSA-PSS, else "SHA256withRSA"
+     */
+    public static String getRSASignatureAlgorithm(String algorithm) {
+        return RSA_PSS.equals(algorithm) ? RSA_PSS_SHA256 : RSA_SHA256;
+    }
+
+    /**
+     *  Get max length of plain text for RSA cipher
+     *
+     * @param transformation - "RSA/ECB/PKCS1Padding", "RSA/ECB/OAEPPadding"
+     * @param keySize        - modulus length in bytes
+     */
+    public static int getRSAMaxPlaintextLength(String transformation, int keySize) {
+        if (RSA_ECB_OAEP.equals(transformation)) {
+            // 2 * hLen + 2
+            return keySize - 66;
+        }
+        return keySize - 11;
+    }
+
+    /**
+     *  Get key size in bytes from modulus
+     */
+    public static int getRSAKeySize(BigInteger modulus) {
+        return (modulus.bitLength() + 7) / 8;
+    }
+
+    //
+    //  Engines for current thread
+    //
+
+    // engine with the key (and mode) it was initialized with;
+    // the initialized engine holds the key strongly anyway, so the key
+    // stays reachable from this thread until the engine is re-initialized
+    // with another key or released
+    private static final class BoundEngine<E> {
+
+        final E engine;
+
+        private Key key = null;
+        private int mode = 0;
+
+        BoundEngine(E engine) {
+            this.engine = engine;
+        }
+
+        boolean isBound(Key other, int opmode) {
+            return key == other && mode == opmode;
+        }
+
+        void bind(Key other, int opmode) {
+            key = other;
+            mode = opmode;
+        }
+
+        void unbind() {
+            key = null;
+            mode = 0;
+        }
+    }
+
+    private static final int SIGN_MODE = 1;
+    private static final int VERIFY_MODE = 2;
+
+    // engines for current thread, mapped by algorithm
+    private static final ThreadLocal<Map<String, BoundEngine<Cipher>>> threadCiphers = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, BoundEngine<Signature>>> threadSigners = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     *  Get cipher for current thread, initialized with the key;
+     *  the init step is skipped when the cipher is still bound to the same key & mode
+     *  (cipher is reset to the initialized state after 'doFinal')
+     *
+     * @param algorithm - transformation, e.g.: "RSA/ECB/PKCS1Padding"
+     * @param mode      - Cipher.ENCRYPT_MODE/DECRYPT_MODE
+     * @param key       - JCA key
+     */
+    public static Cipher getCipher(String algorithm, int mode, Key key)
+            throws NoSuchPaddingException, NoSuchAlgorithmException, InvalidKeyException {
+        Map<String, BoundEngine<Cipher>> ciphers = threadCiphers.get();
+        BoundEngine<Cipher> bound = ciphers.get(algorithm);
+        if (bound == null) {
+            bound = new BoundEngine<>(Cipher.getInstance(algorithm));
+            ciphers.put(algorithm, bound);
+        } else if (bound.isBound(key, mode)) {
+            return bound.engine;
+        }
+        bound.unbind();
+        if (RSA_ECB_OAEP.equals(algorithm)) {
+            try {
+                bound.engine.init(mode, key, OAEP_SHA256);
+            } catch (InvalidAlgorithmParameterException e) {
+                throw new InvalidKeyException("OAEP parameters not accepted", e);
+            }
+        } else {
+            bound.engine.init(mode, key);
+        }
+        bound.bind(key, mode);
+        return bound.engine;
+    }
+
+    /**
+     *  Get signature for current thread, initialized for signing with the private key
+     *  (signature is reset to the initialized state after 'sign')
+     */
+    public static Signature getSigner(String algorithm, PrivateKey key) throws NoSuchAlgorithmException, InvalidKeyException {
+        BoundEngine<Signature> bound = getBoundSignature(algorithm);
+        if (bound.isBound(key, SIGN_MODE)) {
+            return bound.engine;
+        }
+        bound.unbind();
+        bound.engine.initSign(key);
+        bound.bind(key, SIGN_MODE);
+        return bound.engine;
+    }
+
+    /**
+     *  Get signature for current thread, initialized for verifying with the public key
+     *  (signature is reset to the initialized state after 'verify')
+     */
+    public static Signature getVerifier(String algorithm, PublicKey key) throws NoSuchAlgorithmException, InvalidKeyException {
+        BoundEngine<Signature> bound = getBoundSignature(algorithm);
+        if (bound.isBound(key, VERIFY_MODE)) {
+            return bound.engine;
+        }
+        bound.unbind();
+        bound.engine.initVerify(key);
+        bound.bind(key, VERIFY_MODE);
+        return bound.engine;
+    }
+
+    private static BoundEngine<Signature> getBoundSignature(String algorithm) throws NoSuchAlgorithmException {
+        Map<String, BoundEngine<Signature>> signers = threadSigners.get();
+        BoundEngine<Signature> bound = signers.get(algorithm);
+        if (bound == null) {
+            Signature engine = Signature.getInstance(algorithm);
+            if (RSA_PSS_SHA256.equals(algorithm)) {
+                // parameters stay with the engine after each init
+                try {
+                    engine.setParameter(PSS_SHA256);
+                } catch (InvalidAlgorithmParameterException e) {
+                    throw new NoSuchAlgorithmException("PSS parameters not supported", e);
+                }
+            }
+            bound = new BoundEngine<>(engine);
+            signers.put(algorithm, bound);
+        }
+        return bound;
+    }
+
+    /**
+     *  Drop the cipher of current thread
+     *  (call it when an operation failed, the cipher state is unknown,
+     *   or to stop retaining the last key, e.g. after a private key is destroyed)
+     */
+    public static void releaseCipher(String algorithm) {
+        threadCiphers.get().remove(algorithm);
+    }
+
+    /**
+     *  Drop the signature of current thread
+     *  (call it when an operation failed, the signature state is unknown,
+     *   or to stop retaining the last key, e.g. after a private key is destroyed)
+     */
+    public static void releaseSignature(String algorithm) {
+        threadSigners.get().remove(algorithm);
+    }
+
+    //
+    //  Random
+    //
+
+    // one generator per thread, seeded once from the system
+    private static final ThreadLocal<SecureRandom> randoms = ThreadLocal.withInitial(CryptoUtils::createSecureRandom);
+
+    private static SecureRandom createSecureRandom() {
+        // DRBG (Java 9+), or SHA1PRNG (Java 8), both keep their state in the instance
+        for (String algorithm : new String[]{"DRBG", "SHA1PRNG"}) {
+            try {
+                return SecureRandom.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                // try next
+            }
+        }
+        // platform default (e.g. Android)
+        return new SecureRandom();
+    }
+
+    public static SecureRandom getSecureRandom() {
+        return randoms.get();
+    }
 }
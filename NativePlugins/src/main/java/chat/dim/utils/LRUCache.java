@@ -0,0 +1,314 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.utils;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  Bounded LRU cache with life span
+ *
+ *  <p>
+ *      Entries are dropped when the cache is full (least recently used first)
+ *      or when they are expired; the eviction listener will be called for
+ *      every entry leaving the cache, so the owner can wipe the value.
+ *  </p>
+ *  <p>
+ *      The capacity is the max total weight of entries,
+ *      every entry weighs 1 unless a weigher is given.
+ *  </p>
+ */
+public class LRUCache<K, V> {
+
+    public interface EvictionListener<K, V> {
+
+        void onEvicted(K key, V value);
+    }
+
+    public interface Weigher<K, V> {
+
+        // weight of the entry, should be positive
+        int weigh(K key, V value);
+    }
+
+    public interface Copier<V> {
+
+        // copy of the value, called while holding the cache lock
+        V copy(V value);
+    }
+
+    private static final class Holder<V> {
+
+        final V value;
+        final long expired;
+        final int weight;
+
+        Holder(V value, long expired, int weight) {
+            this.value = value;
+            this.expired = expired;
+            this.weight = weight;
+        }
+    }
+
+    private final long capacity;
+    private final long lifeSpan;  // milliseconds, 0 means never expired
+    private final Weigher<K, V> weigher;
+    private final EvictionListener<K, V> listener;
+
+    private final LinkedHashMap<K, Holder<V>> entries;
+    private long weight = 0;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     *  Create cache
+     *
+     * @param capacity - max total weight of entries
+     * @param lifeSpan - milliseconds for each entry to live, 0 means forever
+     * @param weigher  - weight of each entry (nullable, 1 for each entry)
+     * @param listener - callback for evicted entries (nullable)
+     */
+    public LRUCache(long capacity, long lifeSpan, Weigher<K, V> weigher, EvictionListener<K, V> listener) {
+        super();
+        assert capacity > 0 && lifeSpan >= 0 : "cache params error: " + capacity + ", " + lifeSpan;
+        this.capacity = capacity;
+        this.lifeSpan = lifeSpan;
+        this.weigher = weigher;
+        this.listener = listener;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     *  Create cache
+     *
+     * @param capacity - max count of entries
+     * @param lifeSpan - milliseconds for each entry to live, 0 means forever
+     * @param listener - callback for evicted entries (nullable)
+     */
+    public LRUCache(int capacity, long lifeSpan, EvictionListener<K, V> listener) {
+        this(capacity, lifeSpan, null, listener);
+    }
+
+    public LRUCache(int capacity, long lifeSpan) {
+        this(capacity, lifeSpan, null, null);
+    }
+
+    public V get(K key) {
+        return get(key, null);
+    }
+
+    /**
+     *  Get a copy of the value, made while holding the cache lock,
+     *  so the eviction listener in another thread cannot wipe it during copying
+     *
+     * @param key    - entry key
+     * @param copier - copy the value (nullable, return the value itself)
+     * @return null on not found or expired
+     */
+    public V get(K key, Copier<V> copier) {
+        V value = null;
+        Holder<V> evicted = null;
+        synchronized (entries) {
+            Holder<V> holder = entries.get(key);
+            if (holder == null) {
+                missCount += 1;
+            } else if (isExpired(holder, System.currentTimeMillis())) {
+                entries.remove(key);
+                weight -= holder.weight;
+                evicted = holder;
+                evictionCount += 1;
+                missCount += 1;
+            } else {
+                value = copier == null ? holder.value : copier.copy(holder.value);
+                hitCount += 1;
+            }
+        }
+        if (evicted != null) {
+            evict(key, evicted.value);
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        long expired = lifeSpan > 0 ? System.currentTimeMillis() + lifeSpan : 0;
+        int size = weigher == null ? 1 : weigher.weigh(key, value);
+        List<Map.Entry<K, Holder<V>>> evicted = new ArrayList<>();
+        synchronized (entries) {
+            Holder<V> old = entries.put(key, new Holder<>(value, expired, size));
+            weight += size;
+            if (old != null) {
+                weight -= old.weight;
+                if (old.value != value) {
+                    evicted.add(new AbstractMap.SimpleEntry<>(key, old));
+                }
+            }
+            // drop eldest entries
+            Iterator<Map.Entry<K, Holder<V>>> iterator = entries.entrySet().iterator();
+            Map.Entry<K, Holder<V>> eldest;
+            while (weight > capacity && iterator.hasNext()) {
+                eldest = iterator.next();
+                iterator.remove();
+                weight -= eldest.getValue().weight;
+                evicted.add(eldest);
+                evictionCount += 1;
+            }
+        }
+        for (Map.Entry<K, Holder<V>> item : evicted) {
+            evict(item.getKey(), item.getValue().value);
+        }
+    }
+
+    /**
+     *  Remove entry (eviction listener will be called)
+     *
+     * @param key - entry key
+     * @return removed value (maybe wiped by the listener), null on not found
+     */
+    public V remove(K key) {
+        Holder<V> holder;
+        synchronized (entries) {
+            holder = entries.remove(key);
+            if (holder != null) {
+                weight -= holder.weight;
+            }
+        }
+        if (holder == null) {
+            return null;
+        }
+        evict(key, holder.value);
+        return holder.value;
+    }
+
+    /**
+     *  Remove expired entries
+     *
+     * @return count of removed entries
+     */
+    public int purge() {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<K, Holder<V>>> evicted = new ArrayList<>();
+        synchronized (entries) {
+            Iterator<Map.Entry<K, Holder<V>>> iterator = entries.entrySet().iterator();
+            Map.Entry<K, Holder<V>> item;
+            while (iterator.hasNext()) {
+                item = iterator.next();
+                if (isExpired(item.getValue(), now)) {
+                    iterator.remove();
+                    weight -= item.getValue().weight;
+                    evicted.add(item);
+                    evictionCount += 1;
+                }
+            }
+        }
+        for (Map.Entry<K, Holder<V>> item : evicted) {
+            evict(item.getKey(), item.getValue().value);
+        }
+        return evicted.size();
+    }
+
+    /**
+     *  Remove all entries (eviction listener will be called)
+     */
+    public void clear() {
+        List<Map.Entry<K, Holder<V>>> evicted;
+        synchronized (entries) {
+            evicted = new ArrayList<>(entries.entrySet());
+            entries.clear();
+            weight = 0;
+        }
+        for (Map.Entry<K, Holder<V>> item : evicted) {
+            evict(item.getKey(), item.getValue().value);
+        }
+    }
+
+    private boolean isExpired(Holder<V> holder, long now) {
+        return holder.expired > 0 && holder.expired < now;
+    }
+
+    private void evict(K key, V value) {
+        if (listener != null) {
+            listener.onEvicted(key, value);
+        }
+    }
+
+    //
+    //  Statistics
+    //
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public long getLifeSpan() {
+        return lifeSpan;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    public long getHitCount() {
+        synchronized (entries) {
+            return hitCount;
+        }
+    }
+
+    public long getMissCount() {
+        synchronized (entries) {
+            return missCount;
+        }
+    }
+
+    public long getEvictionCount() {
+        synchronized (entries) {
+            return evictionCount;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (entries) {
+            return "<" + getClass().getSimpleName() + " size=" + entries.size() + " weight=" + weight
+                    + " capacity=" + capacity + " hits=" + hitCount + " misses=" + missCount
+                    + " evictions=" + evictionCount + " />";
+        }
+    }
+
+}
@@ -5,6 +5,7 @@ import org.junit.Test;
 import java.util.HashMap;
 import java.util.Map;
 
+import chat.dim.digest.BLAKE2B256;
 import chat.dim.digest.KECCAK256;
 import chat.dim.digest.RIPEMD160;
 import chat.dim.digest.SHA256;
@@ -78,6 +79,35 @@ public class CryptoTest {
 //                "24602722816b6cad0e143ce9fabf31f6026ec622");
     }
 
+    @Test
+    public void testBlake2b() {
+        String string = "abc";
+        byte[] data = UTF8.encode(string);
+
+        // blake2b-256(abc) = bddd813c634239723171ef3fee98579b94964e3bb1cb3e427262c8c068d52319
+        byte[] hash = BLAKE2B256.digest(data);
+        String res = Hex.encode(hash);
+        String exp = "bddd813c634239723171ef3fee98579b94964e3bb1cb3e427262c8c068d52319";
+        Log.info("blake2b-256(" + string + ") = " + res);
+        Assert.assertEquals(exp, res);
+
+        // throughput
+        data = new byte[1024 * 1024];
+        int rounds = 32;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; ++i) {
+            SHA256.digest(data);
+        }
+        long sha256 = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; ++i) {
+            BLAKE2B256.digest(data);
+        }
+        long blake2b = System.nanoTime() - start;
+        Log.info("SHA-256: " + (rounds * 1000_000_000L / sha256) + " MiB/s, " +
+                "BLAKE2b-256: " + (rounds * 1000_000_000L / blake2b) + " MiB/s");
+    }
+
     @Test
     public void testEncode() {
         String string = "moky";
@@ -0,0 +1,305 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+import chat.dim.format.Base64Data;
+import chat.dim.protocol.SymmetricAlgorithms;
+import chat.dim.protocol.TransportableData;
+
+/**
+ *  AES Key (CTR mode)
+ *
+ *  <blockquote><pre>
+ *  keyInfo format: {
+ *      "algorithm": "AES-CTR",
+ *      "data"     : "{BASE64_ENCODE}}" // password data
+ *  }
+ *
+ *  the initial counter block is stored in extra params as "IV",
+ *  cipher text has the same length as plain text, and any byte range
+ *  of it can be decrypted without processing the data before it.
+ *  NOTICE: CTR mode is not authenticated.
+ *  </pre></blockquote>
+ */
+public final class AESCTRKey extends BaseSymmetricKey {
+
+    public final static String AES_CTR = "AES-CTR";
+    public final static String AES_CTR_NO_PADDING = "AES/CTR/NoPadding";
+
+    public final static int BLOCK_SIZE = 16;
+
+    private TransportableData keyData;
+
+    // decoded key data
+    private volatile SecretKeySpec keySpec;
+
+    public AESCTRKey(Map<String, Object> dictionary) {
+        super(dictionary);
+        // lazy load
+        keyData = null;
+        keySpec = null;
+    }
+
+    public static AESCTRKey newKey() {
+        return newKey(32);
+    }
+    public static AESCTRKey newKey(int keySize) {
+        byte[] pwd = RandomBytes.generate(keySize);
+        TransportableData ted = Base64Data.create(pwd);
+        Map<String, Object> info = new HashMap<>();
+        info.put("algorithm", AES_CTR);
+        info.put("data", ted.serialize());
+        AESCTRKey key = new AESCTRKey(info);
+        key.keyData = ted;
+        key.keySpec = new SecretKeySpec(pwd, SymmetricAlgorithms.AES);
+        return key;
+    }
+
+    @Override
+    public TransportableData getData() {
+        TransportableData ted = keyData;
+        if (ted == null) {
+            Object base64 = get("data");
+            assert base64 != null : "key data not found: " + toMap();
+            ted = TransportableData.parse(base64);
+            assert ted != null && !ted.isEmpty() : "key data error: " + base64;
+            keyData = ted;
+        }
+        return ted;
+    }
+
+    protected SecretKeySpec getKeySpec() {
+        SecretKeySpec spec = keySpec;
+        if (spec == null) {
+            TransportableData data = getData();
+            assert data != null && !data.isEmpty() : "key error: " + toMap();
+            spec = new SecretKeySpec(data.getBytes(), SymmetricAlgorithms.AES);
+            keySpec = spec;
+        }
+        return spec;
+    }
+
+    protected byte[] getInitVector(Map<String, Object> params) {
+        if (params == null) {
+            assert false : "params must provided to fetch IV for AES-CTR";
+            return null;
+        }
+        // get base64 encoded IV from params
+        Object base64 = params.get("IV");
+        if (base64 == null) {
+            base64 = params.get("iv");
+        }
+        // decode IV data
+        TransportableData iv = TransportableData.parse(base64);
+        if (iv == null || iv.isEmpty()) {
+            assert base64 == null : "IV data error: " + base64;
+            return null;
+        } else if (iv.getBytes().length != BLOCK_SIZE) {
+            assert false : "IV length error: " + base64;
+            return null;
+        }
+        return iv.getBytes();
+    }
+    protected byte[] newInitVector(Map<String, Object> extra) {
+        // random IV data
+        byte[] iv = RandomBytes.generate(BLOCK_SIZE);
+        // put encoded IV into extra
+        if (extra == null) {
+            assert false : "extra dict must provided to store IV for AES-CTR";
+        } else {
+            TransportableData ted = Base64Data.create(iv);
+            extra.put("IV", ted.serialize());
+        }
+        // OK
+        return iv;
+    }
+
+    /**
+     *  Get counter block for the block at index
+     *  (initial counter block as 128-bit big-endian integer plus index)
+     */
+    static byte[] getCounterBlock(byte[] iv, long blockIndex) {
+        byte[] counter = iv.clone();
+        long carry = blockIndex;
+        for (int i = counter.length - 1; i >= 0 && carry != 0; --i) {
+            carry += counter[i] & 0xFF;
+            counter[i] = (byte) carry;
+            carry >>>= 8;
+        }
+        return counter;
+    }
+
+    /**
+     *  Create cipher positioned at the offset of the key stream
+     *
+     * @param iv     - initial counter block
+     * @param offset - byte offset in the whole plain/cipher text
+     * @return null on error
+     */
+    private Cipher newCipher(byte[] iv, long offset) {
+        assert offset >= 0 : "offset error: " + offset;
+        byte[] counter = getCounterBlock(iv, offset / BLOCK_SIZE);
+        try {
+            Cipher cipher = Cipher.getInstance(AES_CTR_NO_PADDING);
+            // CTR is symmetric, encrypt mode works for both directions
+            cipher.init(Cipher.ENCRYPT_MODE, getKeySpec(), new IvParameterSpec(counter));
+            int skip = (int) (offset % BLOCK_SIZE);
+            if (skip > 0) {
+                // drop the used key stream in the first block
+                cipher.update(new byte[skip]);
+            }
+            return cipher;
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException |
+                InvalidAlgorithmParameterException | InvalidKeyException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static byte[] doFinal(Cipher cipher, byte[] data) {
+        if (cipher == null) {
+            assert false : "failed to get AES-CTR cipher";
+            return null;
+        }
+        try {
+            return cipher.doFinal(data);
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public byte[] encrypt(byte[] plaintext, Map<String, Object> extra) {
+        // a counter block must never be reused with the same key,
+        // so always create a new IV (and put it into extra)
+        byte[] iv = newInitVector(extra);
+        return doFinal(newCipher(iv, 0), plaintext);
+    }
+
+    @Override
+    public byte[] decrypt(byte[] ciphertext, Map<String, Object> params) {
+        return decrypt(ciphertext, 0, params);
+    }
+
+    /**
+     *  Decrypt a segment of cipher text
+     *
+     * @param segment - part of the whole cipher text
+     * @param offset  - position of the segment in the whole cipher text
+     * @param params  - extra params with IV
+     * @return plain text of the segment
+     */
+    public byte[] decrypt(byte[] segment, long offset, Map<String, Object> params) {
+        byte[] iv = getInitVector(params);
+        if (iv == null) {
+            assert false : "IV not found: " + params;
+            return null;
+        }
+        return doFinal(newCipher(iv, offset), segment);
+    }
+
+    //
+    //  Streaming
+    //
+
+    public long encrypt(ReadableByteChannel input, WritableByteChannel output, Map<String, Object> extra) throws IOException {
+        byte[] iv = newInitVector(extra);
+        return process(newCipher(iv, 0), input, output);
+    }
+
+    public long decrypt(ReadableByteChannel input, WritableByteChannel output, Map<String, Object> params) throws IOException {
+        byte[] iv = getInitVector(params);
+        if (iv == null) {
+            assert false : "IV not found: " + params;
+            return -1;
+        }
+        return process(newCipher(iv, 0), input, output);
+    }
+
+    /**
+     *  Decrypt a byte range of the encrypted file
+     *  (the file channel position will not be changed)
+     *
+     * @param input    - encrypted file
+     * @param position - start position in the file
+     * @param length   - count of bytes to decrypt
+     * @param output   - plain text channel
+     * @param params   - extra params with IV
+     * @return count of bytes written, -1 on error
+     * @throws IOException on read/write error
+     */
+    public long decrypt(FileChannel input, long position, long length,
+                        WritableByteChannel output, Map<String, Object> params) throws IOException {
+        byte[] iv = getInitVector(params);
+        if (iv == null) {
+            assert false : "IV not found: " + params;
+            return -1;
+        }
+        Cipher cipher = newCipher(iv, position);
+        if (cipher == null) {
+            assert false : "failed to get AES-CTR cipher";
+            return -1;
+        }
+        try {
+            return CipherStreams.process(cipher, input, position, length, output);
+        } catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    private static long process(Cipher cipher, ReadableByteChannel input, WritableByteChannel output) throws IOException {
+        if (cipher == null) {
+            assert false : "failed to get AES-CTR cipher";
+            return -1;
+        }
+        try {
+            return CipherStreams.process(cipher, input, output);
+        } catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+}
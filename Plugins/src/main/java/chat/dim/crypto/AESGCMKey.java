@@ -0,0 +1,79 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import javax.crypto.spec.GCMParameterSpec;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Map;
+
+import chat.dim.protocol.SymmetricAlgorithms;
+
+/**
+ *  AES Key (GCM mode)
+ *
+ *  <blockquote><pre>
+ *  keyInfo format: {
+ *      "algorithm": "AES-GCM",
+ *      "data"     : "{BASE64_ENCODE}}" // password data
+ *  }
+ *  </pre></blockquote>
+ */
+public final class AESGCMKey extends BaseAEADKey {
+
+    public final static String AES_GCM = "AES-GCM";
+    public final static String AES_GCM_NO_PADDING = "AES/GCM/NoPadding";
+
+    // authentication tag length in bits
+    public final static int TAG_LENGTH = 128;
+
+    public AESGCMKey(Map<String, Object> dictionary) {
+        super(dictionary);
+    }
+
+    public static AESGCMKey newKey() {
+        return newKey(32);
+    }
+    public static AESGCMKey newKey(int keySize) {
+        byte[] pwd = RandomBytes.generate(keySize);
+        return new AESGCMKey(newKeyInfo(AES_GCM, pwd));
+    }
+
+    @Override
+    protected String getTransformation() {
+        return AES_GCM_NO_PADDING;
+    }
+
+    @Override
+    protected String getSecretKeyAlgorithm() {
+        return SymmetricAlgorithms.AES;
+    }
+
+    @Override
+    protected AlgorithmParameterSpec getParameterSpec(byte[] nonce) {
+        return new GCMParameterSpec(TAG_LENGTH, nonce);
+    }
+
+}
@@ -29,14 +29,23 @@ import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Random;
 
 import chat.dim.format.Base64Data;
 import chat.dim.protocol.SymmetricAlgorithms;
@@ -53,13 +62,17 @@ import chat.dim.protocol.TransportableData;
  *  }
  *  </pre></blockquote>
  */
-public final class AESKey extends BaseSymmetricKey {
+public final class AESKey extends BaseSymmetricKey implements BufferCipher {
 
     public final static String AES_CBC_PKCS7 = "AES/CBC/PKCS7Padding";
 
     private TransportableData keyData;
     // private TransportableData ivData;
 
+    // decoded key data, block size
+    private volatile SecretKeySpec keySpec;
+    private int blockSize;
+
     public AESKey(Map<String, Object> dictionary) {
         super(dictionary);
         // TODO: check algorithm parameters
@@ -68,6 +81,22 @@ public final class AESKey extends BaseSymmetricKey {
 
         // lazy load
         keyData = null;
+        keySpec = null;
+        blockSize = 0;
+    }
+
+    /**
+     *  Create key for a new dictionary, sharing the decoded key data of
+     *  a parsed key with the same 'data' (e.g. from the key cache)
+     *
+     * @param dictionary - key info
+     * @param decoded    - parsed key
+     */
+    public AESKey(Map<String, Object> dictionary, AESKey decoded) {
+        super(dictionary);
+        keyData = decoded.getData();
+        keySpec = decoded.keySpec;
+        blockSize = 0;
     }
 
     public static AESKey newKey() {
@@ -86,39 +115,54 @@ public final class AESKey extends BaseSymmetricKey {
         /*/
         AESKey key = new AESKey(info);
         key.keyData = ted;
+        key.keySpec = new SecretKeySpec(pwd, SymmetricAlgorithms.AES);
         return key;
     }
 
+    // one cipher per thread, re-initialized with key & IV for each message
+    private static final ThreadLocal<Cipher> ciphers = new ThreadLocal<>();
+
+    private static Cipher getCipher() throws NoSuchAlgorithmException, NoSuchPaddingException {
+        Cipher cipher = ciphers.get();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(AES_CBC_PKCS7);
+            ciphers.set(cipher);
+        }
+        return cipher;
+    }
+
     protected int getDefaultBlockSize() {
         try {
-            Cipher cipher = Cipher.getInstance(AES_CBC_PKCS7);
-            return cipher.getBlockSize();
+            return getCipher().getBlockSize();
         } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
             e.printStackTrace();
             return 16;
         }
     }
 
-    protected Cipher getEncryptCipher(byte[] keyData, byte[] ivData) {
-        try {
-            Cipher cipher = Cipher.getInstance(AES_CBC_PKCS7);
-            SecretKeySpec keySpec = new SecretKeySpec(keyData, SymmetricAlgorithms.AES);
-            IvParameterSpec ivSpec = new IvParameterSpec(ivData);
-            cipher.init(Cipher.ENCRYPT_MODE, keySpec, ivSpec);
-            return cipher;
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException |
-                InvalidAlgorithmParameterException | InvalidKeyException e) {
-            e.printStackTrace();
-            return null;
+    protected SecretKeySpec getKeySpec() {
+        SecretKeySpec spec = keySpec;
+        if (spec == null) {
+            TransportableData data = getData();
+            assert data != null && !data.isEmpty() : "key error: " + toMap();
+            spec = new SecretKeySpec(data.getBytes(), SymmetricAlgorithms.AES);
+            keySpec = spec;
         }
+        return spec;
+    }
+
+    protected Cipher getEncryptCipher(byte[] ivData) {
+        return getCipher(Cipher.ENCRYPT_MODE, ivData);
+    }
+
+    protected Cipher getDecryptCipher(byte[] ivData) {
+        return getCipher(Cipher.DECRYPT_MODE, ivData);
     }
 
-    protected Cipher getDecryptCipher(byte[] keyData, byte[] ivData) {
+    private Cipher getCipher(int mode, byte[] ivData) {
         try {
-            Cipher cipher = Cipher.getInstance(AES_CBC_PKCS7);
-            SecretKeySpec keySpec = new SecretKeySpec(keyData, SymmetricAlgorithms.AES);
-            IvParameterSpec ivSpec = new IvParameterSpec(ivData);
-            cipher.init(Cipher.DECRYPT_MODE, keySpec, ivSpec);
+            Cipher cipher = getCipher();
+            cipher.init(mode, getKeySpec(), new IvParameterSpec(ivData));
             return cipher;
         } catch (NoSuchAlgorithmException | NoSuchPaddingException |
                 InvalidAlgorithmParameterException | InvalidKeyException e) {
@@ -137,12 +181,14 @@ public final class AESKey extends BaseSymmetricKey {
     }
 
     protected int getBlockSize() {
-        // TODO: get from iv data
-        Integer size = getInteger("blockSize");
-        if (size != null) {
-            return size;
+        int size = blockSize;
+        if (size == 0) {
+            // TODO: get from iv data
+            Integer value = getInteger("blockSize");
+            size = value != null ? value : getDefaultBlockSize(); // 16
+            blockSize = size;
         }
-        return getDefaultBlockSize(); // 16
+        return size;
     }
 
     @Override
@@ -208,15 +254,9 @@ public final class AESKey extends BaseSymmetricKey {
     @Override
     public byte[] encrypt(byte[] plaintext, Map<String, Object> extra) {
         // 1. if 'IV' not found in extra params, new a random 'IV'
-        byte[] iv = getInitVector(extra);
-        if (iv == null) {
-            iv = newInitVector(extra);
-        }
-        // 2. get key data
-        TransportableData data = getData();
-        assert data != null && !data.isEmpty() : "key error: " + toMap();
-        // 3. try to encrypt
-        Cipher cipher = getEncryptCipher(data.getBytes(), iv);
+        byte[] iv = prepareEncryptVector(extra);
+        // 2. try to encrypt
+        Cipher cipher = getEncryptCipher(iv);
         if (cipher == null) {
             assert false : "failed to get encrypt cipher";
             return null;
@@ -232,15 +272,9 @@ public final class AESKey extends BaseSymmetricKey {
     @Override
     public byte[] decrypt(byte[] ciphertext, Map<String, Object> params) {
         // 1. if 'IV' not found in extra params, use an empty 'IV'
-        byte[] iv = getInitVector(params);
-        if (iv == null) {
-            iv = zeroInitVector();
-        }
-        // 2. get key data
-        TransportableData data = getData();
-        assert data != null && !data.isEmpty() : "key error: " + toMap();
-        // 3. try to decrypt
-        Cipher cipher = getDecryptCipher(data.getBytes(), iv);
+        byte[] iv = prepareDecryptVector(params);
+        // 2. try to decrypt
+        Cipher cipher = getDecryptCipher(iv);
         if (cipher == null) {
             assert false : "failed to get decrypt cipher";
             return null;
@@ -253,11 +287,231 @@ public final class AESKey extends BaseSymmetricKey {
         }
     }
 
+    //
+    //  Buffers
+    //
+
+    @Override
+    public int getEncryptOutputSize(int inputLength) {
+        // PKCS#7 always appends 1 ~ blockSize bytes
+        int blockSize = getBlockSize();
+        return (inputLength / blockSize + 1) * blockSize;
+    }
+
+    @Override
+    public int getDecryptOutputSize(int inputLength) {
+        return inputLength;
+    }
+
+    @Override
+    public int encrypt(byte[] input, int inputOffset, int inputLength,
+                       byte[] output, int outputOffset, Map<String, Object> extra) {
+        if (output.length - outputOffset < getEncryptOutputSize(inputLength)) {
+            assert false : "output buffer too short: " + (output.length - outputOffset);
+            return -1;
+        }
+        Cipher cipher = getEncryptCipher(prepareEncryptVector(extra));
+        if (cipher == null) {
+            assert false : "failed to get encrypt cipher";
+            return -1;
+        }
+        try {
+            return cipher.doFinal(input, inputOffset, inputLength, output, outputOffset);
+        } catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    @Override
+    public int decrypt(byte[] input, int inputOffset, int inputLength,
+                       byte[] output, int outputOffset, Map<String, Object> params) {
+        if (output.length - outputOffset < getDecryptOutputSize(inputLength)) {
+            assert false : "output buffer too short: " + (output.length - outputOffset);
+            return -1;
+        }
+        Cipher cipher = getDecryptCipher(prepareDecryptVector(params));
+        if (cipher == null) {
+            assert false : "failed to get decrypt cipher";
+            return -1;
+        }
+        try {
+            return cipher.doFinal(input, inputOffset, inputLength, output, outputOffset);
+        } catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    @Override
+    public int encrypt(ByteBuffer input, ByteBuffer output, Map<String, Object> extra) {
+        if (output.remaining() < getEncryptOutputSize(input.remaining())) {
+            assert false : "output buffer too short: " + output.remaining();
+            return -1;
+        }
+        Cipher cipher = getEncryptCipher(prepareEncryptVector(extra));
+        if (cipher == null) {
+            assert false : "failed to get encrypt cipher";
+            return -1;
+        }
+        return doFinal(cipher, input, output);
+    }
+
+    @Override
+    public int decrypt(ByteBuffer input, ByteBuffer output, Map<String, Object> params) {
+        if (output.remaining() < getDecryptOutputSize(input.remaining())) {
+            assert false : "output buffer too short: " + output.remaining();
+            return -1;
+        }
+        Cipher cipher = getDecryptCipher(prepareDecryptVector(params));
+        if (cipher == null) {
+            assert false : "failed to get decrypt cipher";
+            return -1;
+        }
+        return doFinal(cipher, input, output);
+    }
+
+    private static int doFinal(Cipher cipher, ByteBuffer input, ByteBuffer output) {
+        int inPos = input.position();
+        int outPos = output.position();
+        try {
+            return cipher.doFinal(input, output);
+        } catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
+            e.printStackTrace();
+            // rewind buffers
+            input.position(inPos);
+            output.position(outPos);
+            return -1;
+        }
+    }
+
+    //
+    //  Streaming
+    //
+
+    private byte[] prepareEncryptVector(Map<String, Object> extra) {
+        // if 'IV' not found in extra params, new a random 'IV'
+        byte[] iv = getInitVector(extra);
+        if (iv == null) {
+            iv = newInitVector(extra);
+        }
+        return iv;
+    }
+
+    private byte[] prepareDecryptVector(Map<String, Object> params) {
+        // if 'IV' not found in extra params, use an empty 'IV'
+        byte[] iv = getInitVector(params);
+        if (iv == null) {
+            iv = zeroInitVector();
+        }
+        return iv;
+    }
+
+    // a stream keeps its cipher during the whole transfer,
+    // so it cannot share the thread-local one with other messages
+    private Cipher newCipher(int mode, byte[] ivData) {
+        try {
+            Cipher cipher = Cipher.getInstance(AES_CBC_PKCS7);
+            cipher.init(mode, getKeySpec(), new IvParameterSpec(ivData));
+            return cipher;
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException |
+                InvalidAlgorithmParameterException | InvalidKeyException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     *  Encrypt data from input stream to output stream chunk by chunk,
+     *  the output is the same as encrypting the whole data at once
+     *
+     * @param input  - plaintext stream
+     * @param output - ciphertext stream
+     * @param extra  - store IV
+     * @return count of bytes written, -1 on error (the output should be discarded)
+     * @throws IOException on read/write error
+     */
+    public long encrypt(InputStream input, OutputStream output, Map<String, Object> extra) throws IOException {
+        Cipher cipher = newCipher(Cipher.ENCRYPT_MODE, prepareEncryptVector(extra));
+        if (cipher == null) {
+            assert false : "failed to get encrypt cipher";
+            return -1;
+        }
+        try {
+            return CipherStreams.process(cipher, input, output);
+        } catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     *  Decrypt data from input stream to output stream chunk by chunk
+     *
+     * @param input  - ciphertext stream
+     * @param output - plaintext stream
+     * @param params - extra params with IV
+     * @return count of bytes written, -1 on error (the output should be discarded)
+     * @throws IOException on read/write error
+     */
+    public long decrypt(InputStream input, OutputStream output, Map<String, Object> params) throws IOException {
+        Cipher cipher = newCipher(Cipher.DECRYPT_MODE, prepareDecryptVector(params));
+        if (cipher == null) {
+            assert false : "failed to get decrypt cipher";
+            return -1;
+        }
+        try {
+            return CipherStreams.process(cipher, input, output);
+        } catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    public long encrypt(ReadableByteChannel input, WritableByteChannel output, Map<String, Object> extra) throws IOException {
+        Cipher cipher = newCipher(Cipher.ENCRYPT_MODE, prepareEncryptVector(extra));
+        if (cipher == null) {
+            assert false : "failed to get encrypt cipher";
+            return -1;
+        }
+        try {
+            return CipherStreams.process(cipher, input, output);
+        } catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    public long decrypt(ReadableByteChannel input, WritableByteChannel output, Map<String, Object> params) throws IOException {
+        Cipher cipher = newCipher(Cipher.DECRYPT_MODE, prepareDecryptVector(params));
+        if (cipher == null) {
+            assert false : "failed to get decrypt cipher";
+            return -1;
+        }
+        try {
+            return CipherStreams.process(cipher, input, output);
+        } catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    public long encrypt(File input, File output, Map<String, Object> extra) throws IOException {
+        try (FileInputStream fis = new FileInputStream(input);
+             FileOutputStream fos = new FileOutputStream(output)) {
+            return encrypt(fis.getChannel(), fos.getChannel(), extra);
+        }
+    }
+
+    public long decrypt(File input, File output, Map<String, Object> params) throws IOException {
+        try (FileInputStream fis = new FileInputStream(input);
+             FileOutputStream fos = new FileOutputStream(output)) {
+            return decrypt(fis.getChannel(), fos.getChannel(), params);
+        }
+    }
+
     protected static byte[] randomData(int size) {
-        Random random = new Random();
-        byte[] buffer = new byte[size];
-        random.nextBytes(buffer);
-        return buffer;
+        return RandomBytes.generate(size);
     }
 
 }
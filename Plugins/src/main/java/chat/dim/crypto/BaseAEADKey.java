@@ -0,0 +1,260 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import chat.dim.format.Base64Data;
+import chat.dim.protocol.TransportableData;
+
+/**
+ *  Symmetric key with Authenticated Encryption (AEAD)
+ *
+ *  <blockquote><pre>
+ *  keyInfo format: {
+ *      "algorithm": "AES-GCM",          // or "ChaCha20-Poly1305"
+ *      "data"     : "{BASE64_ENCODE}}"  // password data
+ *  }
+ *
+ *  the nonce is stored in extra params as "IV" (same as AES/CBC),
+ *  and the authentication tag is appended to the cipher text.
+ *  </pre></blockquote>
+ */
+public abstract class BaseAEADKey extends BaseSymmetricKey {
+
+    private TransportableData keyData;
+
+    // decoded key data
+    private volatile SecretKeySpec keySpec;
+
+    protected BaseAEADKey(Map<String, Object> dictionary) {
+        super(dictionary);
+        // lazy load
+        keyData = null;
+        keySpec = null;
+    }
+
+    protected static Map<String, Object> newKeyInfo(String algorithm, byte[] pwd) {
+        TransportableData ted = Base64Data.create(pwd);
+        Map<String, Object> info = new HashMap<>();
+        info.put("algorithm", algorithm);
+        info.put("data", ted.serialize());
+        return info;
+    }
+
+    /**
+     *  Get cipher transformation, e.g.: "AES/GCM/NoPadding"
+     */
+    protected abstract String getTransformation();
+
+    // ciphers for current thread, mapped by transformation
+    private static final ThreadLocal<Map<String, Engine>> ciphers = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     *  Cached cipher with the key & nonce of its last initialization
+     */
+    private static final class Engine {
+
+        Cipher cipher;
+        SecretKeySpec lastKey;
+        byte[] lastNonce;
+
+        Engine(Cipher cipher) {
+            this.cipher = cipher;
+        }
+
+        // some providers refuse to init the same cipher object with the same
+        // key & nonce again (e.g. GCM encryption), only that can be fixed by
+        // a new cipher object
+        boolean isReused(SecretKeySpec key, byte[] nonce) {
+            return lastNonce != null && Arrays.equals(lastNonce, nonce) && key.equals(lastKey);
+        }
+    }
+
+    private static Engine getEngine(String transformation) throws NoSuchAlgorithmException, NoSuchPaddingException {
+        Map<String, Engine> cache = ciphers.get();
+        Engine engine = cache.get(transformation);
+        if (engine == null) {
+            engine = new Engine(Cipher.getInstance(transformation));
+            cache.put(transformation, engine);
+        }
+        return engine;
+    }
+
+    protected static Cipher getCipher(String transformation) throws NoSuchAlgorithmException, NoSuchPaddingException {
+        return getEngine(transformation).cipher;
+    }
+
+    /**
+     *  Get algorithm name for SecretKeySpec
+     */
+    protected abstract String getSecretKeyAlgorithm();
+
+    protected abstract AlgorithmParameterSpec getParameterSpec(byte[] nonce);
+
+    protected int getNonceSize() {
+        return 12;
+    }
+
+    @Override
+    public TransportableData getData() {
+        TransportableData ted = keyData;
+        if (ted == null) {
+            Object base64 = get("data");
+            assert base64 != null : "key data not found: " + toMap();
+            ted = TransportableData.parse(base64);
+            assert ted != null && !ted.isEmpty() : "key data error: " + base64;
+            keyData = ted;
+        }
+        return ted;
+    }
+
+    protected SecretKeySpec getKeySpec() {
+        SecretKeySpec spec = keySpec;
+        if (spec == null) {
+            TransportableData data = getData();
+            assert data != null && !data.isEmpty() : "key error: " + toMap();
+            spec = new SecretKeySpec(data.getBytes(), getSecretKeyAlgorithm());
+            keySpec = spec;
+        }
+        return spec;
+    }
+
+    protected byte[] getNonce(Map<String, Object> params) {
+        if (params == null) {
+            assert false : "params must provided to fetch nonce";
+            return null;
+        }
+        // get base64 encoded nonce from params
+        Object base64 = params.get("IV");
+        if (base64 == null) {
+            base64 = params.get("iv");
+        }
+        // decode nonce data
+        TransportableData iv = TransportableData.parse(base64);
+        if (iv == null || iv.isEmpty()) {
+            assert base64 == null : "IV data error: " + base64;
+            return null;
+        }
+        return iv.getBytes();
+    }
+    protected byte[] newNonce(Map<String, Object> extra) {
+        // random nonce data
+        byte[] nonce = RandomBytes.generate(getNonceSize());
+        // put encoded nonce into extra
+        if (extra == null) {
+            assert false : "extra dict must provided to store nonce";
+        } else {
+            TransportableData ted = Base64Data.create(nonce);
+            extra.put("IV", ted.serialize());
+        }
+        // OK
+        return nonce;
+    }
+
+    Cipher getCipher(int mode, byte[] nonce) {
+        String transformation = getTransformation();
+        SecretKeySpec key = getKeySpec();
+        AlgorithmParameterSpec params = getParameterSpec(nonce);
+        try {
+            Engine engine = getEngine(transformation);
+            try {
+                engine.cipher.init(mode, key, params);
+            } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+                if (!engine.isReused(key, nonce)) {
+                    // bad key or nonce, a new cipher object will not help
+                    throw e;
+                }
+                // the cached cipher refused the same key & nonce again,
+                // so replace it with a new cipher object
+                Cipher cipher = Cipher.getInstance(transformation);
+                cipher.init(mode, key, params);
+                engine.cipher = cipher;
+            }
+            engine.lastKey = key;
+            engine.lastNonce = nonce;
+            return engine.cipher;
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException |
+                InvalidAlgorithmParameterException | InvalidKeyException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public byte[] encrypt(byte[] plaintext, Map<String, Object> extra) {
+        // 1. a nonce must never be reused with the same key,
+        //    so always create a new one (and put it into extra)
+        byte[] nonce = newNonce(extra);
+        // 2. try to encrypt
+        Cipher cipher = getCipher(Cipher.ENCRYPT_MODE, nonce);
+        if (cipher == null) {
+            assert false : "failed to get encrypt cipher";
+            return null;
+        }
+        try {
+            return cipher.doFinal(plaintext);
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public byte[] decrypt(byte[] ciphertext, Map<String, Object> params) {
+        // 1. get nonce from params
+        byte[] nonce = getNonce(params);
+        if (nonce == null) {
+            assert false : "nonce not found: " + params;
+            return null;
+        }
+        // 2. try to decrypt & verify
+        Cipher cipher = getCipher(Cipher.DECRYPT_MODE, nonce);
+        if (cipher == null) {
+            assert false : "failed to get decrypt cipher";
+            return null;
+        }
+        try {
+            return cipher.doFinal(ciphertext);
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            // AEADBadTagException: data corrupted or key not matched
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+}
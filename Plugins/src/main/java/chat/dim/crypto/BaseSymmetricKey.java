@@ -25,38 +25,48 @@
  */
 package chat.dim.crypto;
 
+import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.Map;
 
-import chat.dim.data.Comparator;
 import chat.dim.ext.GeneralCryptoHelper;
 import chat.dim.ext.SharedCryptoExtensions;
 import chat.dim.protocol.DecryptKey;
 import chat.dim.protocol.EncryptKey;
 import chat.dim.protocol.SymmetricKey;
+import chat.dim.protocol.TransportableData;
 import chat.dim.type.Dictionary;
-import chat.dim.type.Mapper;
 
 public abstract class BaseSymmetricKey extends Dictionary implements SymmetricKey {
 
+    // decoded key data, calculated when first compared
+    private volatile byte[] keyBytes = null;
+
     protected BaseSymmetricKey(Map<String, Object> dictionary) {
         super(dictionary);
     }
 
+    /**
+     *  Keys are equal only when they have the same key type and key data,
+     *  so equal keys always have the same hash code;
+     *  use 'matchEncryptKey()' to compare with a foreign key type.
+     */
     @Override
     public boolean equals(Object other) {
-        if (other == null) {
-            return isEmpty();
-        } else if (other instanceof Mapper) {
-            if (this == other) {
-                // same object
-                return true;
-            } else if (other instanceof SymmetricKey) {
-                return symmetricKeyEquals((SymmetricKey) other, this);
-            }
-            // compare inner map
-            other = ((Mapper) other).toMap();
+        if (this == other) {
+            // same object
+            return true;
+        } else if (other == null || other.getClass() != getClass()) {
+            // key type not matched
+            return false;
         }
-        return other instanceof Map && Comparator.mapEquals(toMap(), (Map<?, ?>) other);
+        return keyDataEquals((BaseSymmetricKey) other, this);
+    }
+
+    @Override
+    public int hashCode() {
+        byte[] data = getKeyBytes(this);
+        return getClass().hashCode() * 31 + (data == null ? 0 : Arrays.hashCode(data));
     }
 
     @Override
@@ -82,6 +92,36 @@ public abstract class BaseSymmetricKey extends Dictionary implements SymmetricKe
         return GeneralCryptoHelper.matchSymmetricKeys(pKey, sKey);
     }
 
+    /**
+     *  Compare two keys of the same class by key data in constant time
+     *  (the key class determines the algorithm, e.g. 'AES' and 'AES/CBC/PKCS7Padding')
+     */
+    public static boolean keyDataEquals(BaseSymmetricKey a, BaseSymmetricKey b) {
+        if (a == b) {
+            // same object
+            return true;
+        } else if (a.getClass() != b.getClass()) {
+            // algorithm not matched
+            return false;
+        }
+        byte[] d1 = getKeyBytes(a);
+        byte[] d2 = getKeyBytes(b);
+        if (d1 == null || d2 == null) {
+            return d1 == d2;
+        }
+        return MessageDigest.isEqual(d1, d2);
+    }
+
+    private static byte[] getKeyBytes(BaseSymmetricKey key) {
+        byte[] bytes = key.keyBytes;
+        if (bytes == null) {
+            TransportableData data = key.getData();
+            bytes = data == null ? null : data.getBytes();
+            key.keyBytes = bytes;
+        }
+        return bytes;
+    }
+
     public static boolean symmetricKeyEquals(SymmetricKey a, SymmetricKey b) {
         if (a == b) {
             // same object
@@ -0,0 +1,261 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *  Batch Executor
+ *  <p>
+ *      Run one operation over many items (e.g. digest a list of inputs,
+ *      or seal the chunks of a large payload), the items are split into slices and
+ *      processed by the workers of the executor concurrently; the results
+ *      are returned in items order.
+ *  </p>
+ *  <p>
+ *      Digesters and AEAD keys keep one engine per thread,
+ *      so the workers reuse their engines for all items in a slice.
+ *  </p>
+ *
+ *  <blockquote><pre>
+ *  Usage:
+ *      BatchExecutor.shared = new BatchExecutor(Executors.newFixedThreadPool(4), 4);
+ *      List&lt;byte[]&gt; digests = new BatchDigester(SHA256.digester).digest(inputs);
+ *  </pre></blockquote>
+ */
+public class BatchExecutor {
+
+    /**
+     *  Default executor for batch digesters and chunked ciphers
+     */
+    public static BatchExecutor shared = new BatchExecutor();
+
+    // items fewer than this will be processed on the calling thread
+    public static int MIN_PARALLEL_ITEMS = 8;
+
+    public interface Task<R> {
+
+        /**
+         *  Process one item
+         *
+         * @param index - item index
+         * @return result
+         * @throws Exception on failed
+         */
+        R run(int index) throws Exception;
+    }
+
+    /**
+     *  Result of one item, with the value or the error
+     */
+    public static final class Result<R> {
+
+        private final R value;
+        private final Exception error;
+
+        private Result(R value, Exception error) {
+            this.value = value;
+            this.error = error;
+        }
+
+        /**
+         *  Get result value
+         *
+         * @return null on failed
+         */
+        public R getValue() {
+            return value;
+        }
+
+        /**
+         *  Get the exception thrown by the task
+         *
+         * @return null on success
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     *  Failure of one item, stops the whole batch
+     */
+    public static class BatchException extends Exception {
+
+        private final int index;
+
+        public BatchException(int index, Exception cause) {
+            super("batch item " + index + " failed", cause);
+            this.index = index;
+        }
+
+        /**
+         *  Get index of the failed item
+         */
+        public int getIndex() {
+            return index;
+        }
+    }
+
+    private final Executor executor;
+    private final int parallelism;
+
+    public BatchExecutor(Executor executor, int parallelism) {
+        super();
+        assert parallelism > 0 : "parallelism error: " + parallelism;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    public BatchExecutor(Executor executor) {
+        this(executor, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchExecutor() {
+        this(ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     *  Run task for all items, a failed item doesn't stop the others
+     *
+     * @param count - count of items
+     * @param task  - operation for each item
+     * @return result list in items order, each with the value or the error
+     */
+    public <R> List<Result<R>> run(int count, Task<R> task) {
+        return run(count, MIN_PARALLEL_ITEMS, task);
+    }
+
+    /**
+     *  Run task for all items, a failed item doesn't stop the others
+     *
+     * @param count       - count of items
+     * @param minParallel - items fewer than this will be processed on the calling thread
+     * @param task        - operation for each item
+     * @return result list in items order, each with the value or the error
+     */
+    public <R> List<Result<R>> run(int count, int minParallel, Task<R> task) {
+        @SuppressWarnings("unchecked")
+        Result<R>[] results = new Result[count];
+        forEach(count, minParallel, index -> {
+            try {
+                results[index] = new Result<>(task.run(index), null);
+            } catch (Exception e) {
+                results[index] = new Result<>(null, e);
+            }
+            return true;
+        });
+        return Arrays.asList(results);
+    }
+
+    /**
+     *  Run task for all items, stop at the first failed item
+     *
+     * @param count - count of items
+     * @param task  - operation for each item
+     * @return value list in items order
+     * @throws BatchException with the index and the error of the failed item
+     */
+    public <R> List<R> invokeAll(int count, Task<R> task) throws BatchException {
+        return invokeAll(count, MIN_PARALLEL_ITEMS, task);
+    }
+
+    /**
+     *  Run task for all items, stop at the first failed item
+     *
+     * @param count       - count of items
+     * @param minParallel - items fewer than this will be processed on the calling thread
+     * @param task        - operation for each item
+     * @return value list in items order
+     * @throws BatchException with the index and the error of the failed item
+     */
+    public <R> List<R> invokeAll(int count, int minParallel, Task<R> task) throws BatchException {
+        Object[] values = new Object[count];
+        AtomicReference<BatchException> failure = new AtomicReference<>();
+        forEach(count, minParallel, index -> {
+            try {
+                values[index] = task.run(index);
+                return true;
+            } catch (Exception e) {
+                failure.compareAndSet(null, new BatchException(index, e));
+                return false;
+            }
+        });
+        BatchException error = failure.get();
+        if (error != null) {
+            throw error;
+        }
+        @SuppressWarnings("unchecked")
+        List<R> results = (List<R>) Arrays.asList(values);
+        return results;
+    }
+
+    private interface Item {
+
+        // return false to stop
+        boolean run(int index);
+    }
+
+    private void forEach(int count, int minParallel, Item item) {
+        if (count < minParallel || count < 2 || parallelism == 1) {
+            for (int index = 0; index < count; ++index) {
+                if (!item.run(index)) {
+                    return;
+                }
+            }
+            return;
+        }
+        // split items into slices (a few slices per worker for balancing)
+        int slices = (int) Math.min(count, parallelism * 4L);
+        long sliceSize = (count + (long) slices - 1) / slices;
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(slices);
+        for (long from = 0; from < count; from += sliceSize) {
+            int start = (int) from;
+            int end = (int) Math.min(count, from + sliceSize);
+            tasks.add(CompletableFuture.runAsync(() -> {
+                for (int index = start; index < end && !stopped.get(); ++index) {
+                    if (!item.run(index)) {
+                        stopped.set(true);
+                    }
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+    }
+
+}
@@ -0,0 +1,111 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ *  Symmetric cipher writing into caller-owned buffers
+ *
+ *  <p>
+ *      Output sizes can be queried before encrypting/decrypting,
+ *      so the caller can prepare a buffer (e.g. a direct socket buffer)
+ *      large enough to receive the result without extra copying.
+ *  </p>
+ */
+public interface BufferCipher {
+
+    /**
+     *  Get exact length of ciphertext for plaintext with the given length
+     *
+     * @param inputLength - plaintext length
+     * @return ciphertext length
+     */
+    int getEncryptOutputSize(int inputLength);
+
+    /**
+     *  Get max length of plaintext for ciphertext with the given length
+     *  (the real length is known after padding removed)
+     *
+     * @param inputLength - ciphertext length
+     * @return max plaintext length
+     */
+    int getDecryptOutputSize(int inputLength);
+
+    /**
+     *  Encrypt plaintext into output array,
+     *  input and output may be the same array
+     *
+     * @param input        - plaintext array
+     * @param inputOffset  - plaintext offset
+     * @param inputLength  - plaintext length
+     * @param output       - ciphertext array
+     * @param outputOffset - ciphertext offset
+     * @param extra        - store extra variables ('IV' for 'AES')
+     * @return count of bytes written to output, -1 on error
+     */
+    int encrypt(byte[] input, int inputOffset, int inputLength,
+                byte[] output, int outputOffset, Map<String, Object> extra);
+
+    /**
+     *  Decrypt ciphertext into output array,
+     *  input and output may be the same array
+     *
+     * @param input        - ciphertext array
+     * @param inputOffset  - ciphertext offset
+     * @param inputLength  - ciphertext length
+     * @param output       - plaintext array
+     * @param outputOffset - plaintext offset
+     * @param params       - extra params ('IV' for 'AES')
+     * @return count of bytes written to output, -1 on error
+     */
+    int decrypt(byte[] input, int inputOffset, int inputLength,
+                byte[] output, int outputOffset, Map<String, Object> params);
+
+    /**
+     *  Encrypt all remaining bytes of input buffer into output buffer,
+     *  both positions will be advanced
+     *
+     * @param input  - plaintext buffer
+     * @param output - ciphertext buffer
+     * @param extra  - store extra variables ('IV' for 'AES')
+     * @return count of bytes written to output, -1 on error (positions unchanged)
+     */
+    int encrypt(ByteBuffer input, ByteBuffer output, Map<String, Object> extra);
+
+    /**
+     *  Decrypt all remaining bytes of input buffer into output buffer,
+     *  both positions will be advanced
+     *
+     * @param input  - ciphertext buffer
+     * @param output - plaintext buffer
+     * @param params - extra params ('IV' for 'AES')
+     * @return count of bytes written to output, -1 on error (positions unchanged)
+     */
+    int decrypt(ByteBuffer input, ByteBuffer output, Map<String, Object> params);
+
+}
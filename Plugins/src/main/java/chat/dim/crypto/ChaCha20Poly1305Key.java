@@ -0,0 +1,87 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.IvParameterSpec;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Map;
+
+/**
+ *  ChaCha20-Poly1305 Key
+ *  <p>
+ *      For devices without AES instructions;
+ *      the cipher is provided by Java 11+ (or Android 9+).
+ *  </p>
+ *
+ *  <blockquote><pre>
+ *  keyInfo format: {
+ *      "algorithm": "ChaCha20-Poly1305",
+ *      "data"     : "{BASE64_ENCODE}}" // password data (32 bytes)
+ *  }
+ *  </pre></blockquote>
+ */
+public final class ChaCha20Poly1305Key extends BaseAEADKey {
+
+    public final static String CHACHA20_POLY1305 = "ChaCha20-Poly1305";
+
+    public ChaCha20Poly1305Key(Map<String, Object> dictionary) {
+        super(dictionary);
+    }
+
+    public static ChaCha20Poly1305Key newKey() {
+        byte[] pwd = RandomBytes.generate(32);
+        return new ChaCha20Poly1305Key(newKeyInfo(CHACHA20_POLY1305, pwd));
+    }
+
+    /**
+     *  Check whether the cipher is supported by current platform
+     */
+    public static boolean isSupported() {
+        try {
+            return getCipher(CHACHA20_POLY1305) != null;
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            return false;
+        }
+    }
+
+    @Override
+    protected String getTransformation() {
+        return CHACHA20_POLY1305;
+    }
+
+    @Override
+    protected String getSecretKeyAlgorithm() {
+        return "ChaCha20";
+    }
+
+    @Override
+    protected AlgorithmParameterSpec getParameterSpec(byte[] nonce) {
+        return new IvParameterSpec(nonce);
+    }
+
+}
@@ -0,0 +1,449 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ *  Chunked Authenticated Encryption
+ *  <p>
+ *      Large payloads are split into fixed-size chunks, each chunk is sealed
+ *      with its own nonce and tag, so the chunks can be encrypted/decrypted
+ *      by the batch executor concurrently, and a corrupted chunk
+ *      can be detected (and located) without touching the others.
+ *  </p>
+ *
+ *  <blockquote><pre>
+ *  Container format:
+ *
+ *      +--------+---------+----------+------------+--------------+---------------+
+ *      | "DIMC" | version | reserved | chunk size | total length | base nonce    |
+ *      | 4 bytes| 1 byte  | 3 bytes  | 4 bytes    | 8 bytes      | 12 bytes      |
+ *      +--------+---------+----------+------------+--------------+---------------+
+ *      | chunk 0: ciphertext (chunk size) + tag (16 bytes)                       |
+ *      | chunk 1: ...                                                            |
+ *      | chunk N: ciphertext (rest bytes) + tag (16 bytes)                       |
+ *      +-------------------------------------------------------------------------+
+ *
+ *      nonce of chunk i = base nonce XOR i (big-endian, in the last 8 bytes)
+ *      AAD of chunk i   = header (32 bytes) + i (8 bytes, big-endian)
+ *
+ *  the header is authenticated by every chunk, so chunks cannot be
+ *  reordered, truncated or moved into another container.
+ *  </pre></blockquote>
+ */
+public class ChunkedCipher {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;  // 1 MiB
+
+    public static final int HEADER_SIZE = 32;
+    public static final int TAG_SIZE = 16;
+
+    private static final byte[] MAGIC = {'D', 'I', 'M', 'C'};
+    private static final byte VERSION = 1;
+
+    // chunks are large, so two chunks are worth running in parallel
+    private static final int MIN_PARALLEL_CHUNKS = 2;
+
+    private final BaseAEADKey key;
+    private final int chunkSize;
+    private final BatchExecutor executor;
+
+    public ChunkedCipher(BaseAEADKey key, int chunkSize, BatchExecutor executor) {
+        super();
+        assert key != null : "key should not be empty";
+        assert chunkSize > 0 : "chunk size error: " + chunkSize;
+        assert key.getNonceSize() == 12 : "nonce size not supported: " + key.getNonceSize();
+        this.key = key;
+        this.chunkSize = chunkSize;
+        this.executor = executor;
+    }
+
+    public ChunkedCipher(BaseAEADKey key, int chunkSize, Executor executor, int parallelism) {
+        this(key, chunkSize, new BatchExecutor(executor, parallelism));
+    }
+
+    public ChunkedCipher(BaseAEADKey key, int chunkSize) {
+        this(key, chunkSize, BatchExecutor.shared);
+    }
+
+    public ChunkedCipher(BaseAEADKey key) {
+        this(key, DEFAULT_CHUNK_SIZE);
+    }
+
+    public BaseAEADKey getKey() {
+        return key;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    //
+    //  Layout
+    //
+
+    public static long getChunkCount(long totalLength, int chunkSize) {
+        // at least one chunk, so an empty payload is still authenticated
+        return totalLength == 0 ? 1 : (totalLength + chunkSize - 1) / chunkSize;
+    }
+
+    public static long getContainerLength(long totalLength, int chunkSize) {
+        return HEADER_SIZE + totalLength + getChunkCount(totalLength, chunkSize) * TAG_SIZE;
+    }
+
+    private static final class Header {
+
+        final byte[] data;
+        final int chunkSize;
+        final long totalLength;
+        final byte[] nonce;
+
+        Header(byte[] data, int chunkSize, long totalLength, byte[] nonce) {
+            this.data = data;
+            this.chunkSize = chunkSize;
+            this.totalLength = totalLength;
+            this.nonce = nonce;
+        }
+
+        long getChunkCount() {
+            return ChunkedCipher.getChunkCount(totalLength, chunkSize);
+        }
+
+        int getChunkLength(long index) {
+            long start = index * chunkSize;
+            return (int) Math.min(chunkSize, totalLength - start);
+        }
+
+        long getChunkPosition(long index) {
+            return HEADER_SIZE + index * ((long) chunkSize + TAG_SIZE);
+        }
+
+        static Header create(int chunkSize, long totalLength) {
+            byte[] nonce = RandomBytes.generate(12);
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+            buffer.put(MAGIC).put(VERSION).put(new byte[3]);
+            buffer.putInt(chunkSize).putLong(totalLength).put(nonce);
+            return new Header(buffer.array(), chunkSize, totalLength, nonce);
+        }
+
+        static Header parse(byte[] data) {
+            if (data.length < HEADER_SIZE) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(data, 0, HEADER_SIZE);
+            byte[] magic = new byte[4];
+            buffer.get(magic);
+            if (!Arrays.equals(MAGIC, magic) || buffer.get() != VERSION) {
+                return null;
+            }
+            buffer.position(8);
+            int chunkSize = buffer.getInt();
+            long totalLength = buffer.getLong();
+            if (chunkSize <= 0 || totalLength < 0) {
+                return null;
+            } else if (chunkSize > Integer.MAX_VALUE - TAG_SIZE) {
+                // chunk with tag cannot fit in one buffer
+                return null;
+            } else if (totalLength > (Long.MAX_VALUE - HEADER_SIZE - TAG_SIZE) / (TAG_SIZE + 1)) {
+                // container length overflow
+                return null;
+            }
+            byte[] nonce = new byte[12];
+            buffer.get(nonce);
+            return new Header(Arrays.copyOf(data, HEADER_SIZE), chunkSize, totalLength, nonce);
+        }
+    }
+
+    //
+    //  Chunks
+    //
+
+    private Cipher getChunkCipher(int mode, Header header, long index) {
+        // nonce = base nonce XOR index
+        byte[] nonce = header.nonce.clone();
+        for (int i = 0; i < 8; ++i) {
+            nonce[11 - i] ^= (byte) (index >>> (i * 8));
+        }
+        Cipher cipher = key.getCipher(mode, nonce);
+        if (cipher != null) {
+            // AAD = header + index
+            cipher.updateAAD(header.data);
+            cipher.updateAAD(ByteBuffer.allocate(8).putLong(index).array());
+        }
+        return cipher;
+    }
+
+    private int sealChunk(Header header, long index, byte[] input, int inputOffset, int inputLength,
+                          byte[] output, int outputOffset) throws GeneralSecurityException {
+        Cipher cipher = getChunkCipher(Cipher.ENCRYPT_MODE, header, index);
+        if (cipher == null) {
+            throw new GeneralSecurityException("failed to get encrypt cipher");
+        }
+        return cipher.doFinal(input, inputOffset, inputLength, output, outputOffset);
+    }
+
+    private int openChunk(Header header, long index, byte[] input, int inputOffset, int inputLength,
+                          byte[] output, int outputOffset) throws GeneralSecurityException {
+        Cipher cipher = getChunkCipher(Cipher.DECRYPT_MODE, header, index);
+        if (cipher == null) {
+            throw new GeneralSecurityException("failed to get decrypt cipher");
+        }
+        return cipher.doFinal(input, inputOffset, inputLength, output, outputOffset);
+    }
+
+    private interface ChunkTask {
+
+        void run(long index) throws IOException, GeneralSecurityException;
+    }
+
+    /**
+     *  Run task for all chunks with the batch executor, stop at the first failed chunk
+     *
+     * @return false when any chunk failed to seal/open
+     * @throws IOException on read/write error
+     */
+    private boolean runChunks(long count, ChunkTask task) throws IOException {
+        if (count > Integer.MAX_VALUE) {
+            assert false : "too many chunks: " + count;
+            return false;
+        }
+        try {
+            executor.invokeAll((int) count, MIN_PARALLEL_CHUNKS, index -> {
+                task.run(index);
+                return null;
+            });
+            return true;
+        } catch (BatchExecutor.BatchException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof GeneralSecurityException) {
+                // AEADBadTagException: chunk corrupted or key not matched
+                cause.printStackTrace();
+                return false;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //
+    //  Memory
+    //
+
+    /**
+     *  Encrypt data into container
+     *
+     * @param plaintext - payload
+     * @return container data
+     */
+    public byte[] encrypt(byte[] plaintext) {
+        Header header = Header.create(chunkSize, plaintext.length);
+        long size = getContainerLength(plaintext.length, chunkSize);
+        if (size > Integer.MAX_VALUE) {
+            assert false : "payload too large: " + plaintext.length;
+            return null;
+        }
+        byte[] output = new byte[(int) size];
+        System.arraycopy(header.data, 0, output, 0, HEADER_SIZE);
+        try {
+            boolean ok = runChunks(header.getChunkCount(), index -> {
+                int offset = (int) (index * chunkSize);
+                sealChunk(header, index, plaintext, offset, header.getChunkLength(index),
+                        output, (int) header.getChunkPosition(index));
+            });
+            return ok ? output : null;
+        } catch (IOException e) {
+            // should not happen
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     *  Decrypt container data
+     *
+     * @param container - container data
+     * @return payload, null on error (data corrupted or key not matched)
+     */
+    public byte[] decrypt(byte[] container) {
+        Header header = Header.parse(container);
+        if (header == null || container.length != getContainerLength(header.totalLength, header.chunkSize)) {
+            // header error or truncated
+            return null;
+        }
+        byte[] output = new byte[(int) header.totalLength];
+        try {
+            boolean ok = runChunks(header.getChunkCount(), index -> {
+                int length = header.getChunkLength(index);
+                openChunk(header, index, container, (int) header.getChunkPosition(index), length + TAG_SIZE,
+                        output, (int) (index * header.chunkSize));
+            });
+            return ok ? output : null;
+        } catch (IOException e) {
+            // should not happen
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    //
+    //  Files
+    //
+
+    /**
+     *  Encrypt file content into container file, with positional reads/writes
+     *  (the channel positions will not be changed)
+     *
+     * @param input  - plaintext file
+     * @param output - container file
+     * @return length of the container, -1 on error
+     * @throws IOException on read/write error
+     */
+    public long encrypt(FileChannel input, FileChannel output) throws IOException {
+        long totalLength = input.size();
+        Header header = Header.create(chunkSize, totalLength);
+        writeFully(output, ByteBuffer.wrap(header.data), 0);
+        boolean ok = runChunks(header.getChunkCount(), index -> {
+            int length = header.getChunkLength(index);
+            byte[] buffer = new byte[length + TAG_SIZE];
+            readFully(input, ByteBuffer.wrap(buffer, 0, length), index * chunkSize);
+            // encrypt in place
+            sealChunk(header, index, buffer, 0, length, buffer, 0);
+            writeFully(output, ByteBuffer.wrap(buffer), header.getChunkPosition(index));
+        });
+        if (!ok) {
+            return -1;
+        }
+        long size = getContainerLength(totalLength, chunkSize);
+        output.truncate(size);
+        return size;
+    }
+
+    /**
+     *  Decrypt container file, with positional reads/writes
+     *  (the channel positions will not be changed)
+     *
+     * @param input  - container file
+     * @param output - plaintext file (truncated to empty on error)
+     * @return length of the payload, -1 on error (data corrupted or key not matched)
+     * @throws IOException on read/write error
+     */
+    public long decrypt(FileChannel input, FileChannel output) throws IOException {
+        Header header = readHeader(input);
+        if (header == null || input.size() != getContainerLength(header.totalLength, header.chunkSize)) {
+            // header error or truncated
+            return -1;
+        }
+        boolean ok = false;
+        try {
+            ok = runChunks(header.getChunkCount(), index -> {
+                byte[] plaintext = readChunk(input, header, index);
+                writeFully(output, ByteBuffer.wrap(plaintext), index * header.chunkSize);
+            });
+        } finally {
+            if (!ok) {
+                // drop the chunks already written, the payload is not authenticated
+                output.truncate(0);
+            }
+        }
+        if (!ok) {
+            return -1;
+        }
+        output.truncate(header.totalLength);
+        return header.totalLength;
+    }
+
+    /**
+     *  Decrypt one chunk of the container file
+     *
+     * @param input - container file
+     * @param index - chunk index
+     * @return chunk payload, null on error (chunk corrupted or key not matched)
+     * @throws IOException on read error
+     */
+    public byte[] decryptChunk(FileChannel input, long index) throws IOException {
+        Header header = readHeader(input);
+        if (header == null || index < 0 || index >= header.getChunkCount()) {
+            return null;
+        } else if (input.size() != getContainerLength(header.totalLength, header.chunkSize)) {
+            // truncated, don't allocate buffer for the chunk size from the header
+            return null;
+        }
+        try {
+            return readChunk(input, header, index);
+        } catch (GeneralSecurityException e) {
+            // AEADBadTagException: chunk corrupted or key not matched
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static Header readHeader(FileChannel input) throws IOException {
+        if (input.size() < HEADER_SIZE) {
+            return null;
+        }
+        byte[] data = new byte[HEADER_SIZE];
+        readFully(input, ByteBuffer.wrap(data), 0);
+        return Header.parse(data);
+    }
+
+    private byte[] readChunk(FileChannel input, Header header, long index)
+            throws IOException, GeneralSecurityException {
+        int length = header.getChunkLength(index);
+        byte[] buffer = new byte[length + TAG_SIZE];
+        readFully(input, ByteBuffer.wrap(buffer), header.getChunkPosition(index));
+        // decrypt in place
+        openChunk(header, index, buffer, 0, buffer.length, buffer, 0);
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int len;
+        while (buffer.hasRemaining()) {
+            len = channel.read(buffer, position);
+            if (len < 0) {
+                throw new IOException("unexpected end of file: " + position);
+            }
+            position += len;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+}
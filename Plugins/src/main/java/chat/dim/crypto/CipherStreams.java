@@ -0,0 +1,167 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ *  Run an initialized cipher over streams/channels chunk by chunk,
+ *  with one input buffer and one output buffer reused for all chunks
+ */
+final class CipherStreams {
+    private CipherStreams() {
+        throw new AssertionError("Utility class cannot be instantiated");
+    }
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     *  Process all data from input stream to output stream
+     *
+     * @return count of bytes written
+     */
+    static long process(Cipher cipher, InputStream in, OutputStream out) throws IOException,
+            ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+        byte[] input = new byte[BUFFER_SIZE];
+        byte[] output = new byte[cipher.getOutputSize(BUFFER_SIZE)];
+        long total = 0;
+        int len;
+        while ((len = in.read(input)) >= 0) {
+            if (len == 0) {
+                continue;
+            }
+            len = cipher.update(input, 0, len, output, 0);
+            out.write(output, 0, len);
+            total += len;
+        }
+        len = cipher.doFinal(output, 0);
+        out.write(output, 0, len);
+        total += len;
+        return total;
+    }
+
+    /**
+     *  Process all data from input channel to output channel
+     *
+     * @return count of bytes written
+     */
+    static long process(Cipher cipher, ReadableByteChannel in, WritableByteChannel out) throws IOException,
+            ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+        return process(cipher, in, out, Long.MAX_VALUE);
+    }
+
+    /**
+     *  Process data from input channel to output channel
+     *
+     * @param limit - max count of bytes to read from input
+     * @return count of bytes written
+     */
+    static long process(Cipher cipher, ReadableByteChannel in, WritableByteChannel out, long limit) throws IOException,
+            ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+        byte[] input = new byte[BUFFER_SIZE];
+        byte[] output = new byte[cipher.getOutputSize(BUFFER_SIZE)];
+        ByteBuffer inBuffer = ByteBuffer.wrap(input);
+        long total = 0;
+        long remaining = limit;
+        int len;
+        while (remaining > 0) {
+            inBuffer.clear();
+            if (remaining < BUFFER_SIZE) {
+                inBuffer.limit((int) remaining);
+            }
+            len = in.read(inBuffer);
+            if (len < 0) {
+                break;
+            } else if (len == 0) {
+                continue;
+            }
+            remaining -= len;
+            len = cipher.update(input, 0, len, output, 0);
+            writeFully(out, ByteBuffer.wrap(output, 0, len));
+            total += len;
+        }
+        len = cipher.doFinal(output, 0);
+        writeFully(out, ByteBuffer.wrap(output, 0, len));
+        total += len;
+        return total;
+    }
+
+    /**
+     *  Process data from a range of the file channel to output channel
+     *  with positional reads (the file channel position will not be changed)
+     *
+     * @param position - start position in the file
+     * @param length   - max count of bytes to read from the file
+     * @return count of bytes written
+     */
+    static long process(Cipher cipher, FileChannel in, long position, long length, WritableByteChannel out)
+            throws IOException, ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+        byte[] input = new byte[BUFFER_SIZE];
+        byte[] output = new byte[cipher.getOutputSize(BUFFER_SIZE)];
+        ByteBuffer inBuffer = ByteBuffer.wrap(input);
+        long total = 0;
+        long remaining = length;
+        int len;
+        while (remaining > 0) {
+            inBuffer.clear();
+            if (remaining < BUFFER_SIZE) {
+                inBuffer.limit((int) remaining);
+            }
+            len = in.read(inBuffer, position);
+            if (len < 0) {
+                break;
+            } else if (len == 0) {
+                continue;
+            }
+            position += len;
+            remaining -= len;
+            len = cipher.update(input, 0, len, output, 0);
+            writeFully(out, ByteBuffer.wrap(output, 0, len));
+            total += len;
+        }
+        len = cipher.doFinal(output, 0);
+        writeFully(out, ByteBuffer.wrap(output, 0, len));
+        total += len;
+        return total;
+    }
+
+    static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+}
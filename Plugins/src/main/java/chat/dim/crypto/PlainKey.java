@@ -25,6 +25,7 @@
  */
 package chat.dim.crypto;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -37,7 +38,7 @@ import chat.dim.protocol.TransportableData;
  *  Symmetric key for broadcast message,
  *  which will do nothing when en/decoding message data
  */
-public final class PlainKey extends BaseSymmetricKey {
+public final class PlainKey extends BaseSymmetricKey implements BufferCipher {
 
     private PlainKey(Map<String, Object> dictionary) {
         super(dictionary);
@@ -58,6 +59,59 @@ public final class PlainKey extends BaseSymmetricKey {
         return ciphertext;
     }
 
+    @Override
+    public int getEncryptOutputSize(int inputLength) {
+        return inputLength;
+    }
+
+    @Override
+    public int getDecryptOutputSize(int inputLength) {
+        return inputLength;
+    }
+
+    @Override
+    public int encrypt(byte[] input, int inputOffset, int inputLength,
+                       byte[] output, int outputOffset, Map<String, Object> extra) {
+        return copy(input, inputOffset, inputLength, output, outputOffset);
+    }
+
+    @Override
+    public int decrypt(byte[] input, int inputOffset, int inputLength,
+                       byte[] output, int outputOffset, Map<String, Object> params) {
+        return copy(input, inputOffset, inputLength, output, outputOffset);
+    }
+
+    @Override
+    public int encrypt(ByteBuffer input, ByteBuffer output, Map<String, Object> extra) {
+        return copy(input, output);
+    }
+
+    @Override
+    public int decrypt(ByteBuffer input, ByteBuffer output, Map<String, Object> params) {
+        return copy(input, output);
+    }
+
+    private static int copy(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset) {
+        if (output.length - outputOffset < inputLength) {
+            assert false : "output buffer too short: " + (output.length - outputOffset);
+            return -1;
+        }
+        if (input != output || inputOffset != outputOffset) {
+            System.arraycopy(input, inputOffset, output, outputOffset, inputLength);
+        }
+        return inputLength;
+    }
+
+    private static int copy(ByteBuffer input, ByteBuffer output) {
+        int len = input.remaining();
+        if (output.remaining() < len) {
+            assert false : "output buffer too short: " + output.remaining();
+            return -1;
+        }
+        output.put(input);
+        return len;
+    }
+
     //-------- Runtime --------
 
     private static SymmetricKey ourInstance = null;
@@ -0,0 +1,123 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ *  Random Bytes
+ *  <p>
+ *      Cryptographically secure random data for keys &amp; IVs.
+ *  </p>
+ *  <p>
+ *      Each thread owns a DRBG (seeded once from the system), and takes small
+ *      requests from a pre-filled buffer, so generating keys &amp; IVs never
+ *      contends on a shared lock, and never blocks on entropy after seeding.
+ *  </p>
+ */
+public final class RandomBytes {
+    private RandomBytes() {
+        throw new AssertionError("Utility class cannot be instantiated");
+    }
+
+    private static final int BUFFER_SIZE = 1024;
+
+    // requests larger than this will be filled directly
+    private static final int MAX_BUFFERED_REQUEST = 64;
+
+    private static final ThreadLocal<Pool> pools = ThreadLocal.withInitial(Pool::new);
+
+    /**
+     *  Get secure random generator for current thread
+     *
+     * @return thread-local random generator
+     */
+    public static SecureRandom getSecureRandom() {
+        return pools.get().random;
+    }
+
+    /**
+     *  Generate random data
+     *
+     * @param size - data length
+     * @return random bytes
+     */
+    public static byte[] generate(int size) {
+        byte[] buffer = new byte[size];
+        fill(buffer);
+        return buffer;
+    }
+
+    /**
+     *  Fill the buffer with random data
+     *
+     * @param buffer - output buffer
+     */
+    public static void fill(byte[] buffer) {
+        Pool pool = pools.get();
+        if (buffer.length > MAX_BUFFERED_REQUEST) {
+            pool.random.nextBytes(buffer);
+        } else {
+            pool.take(buffer);
+        }
+    }
+
+    static SecureRandom createSecureRandom() {
+        // DRBG (Java 9+), or SHA1PRNG (Java 8), both keep their state in the instance
+        for (String algorithm : new String[]{"DRBG", "SHA1PRNG"}) {
+            try {
+                return SecureRandom.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                // try next
+            }
+        }
+        // platform default (e.g. Android)
+        return new SecureRandom();
+    }
+
+    private static final class Pool {
+
+        final SecureRandom random = createSecureRandom();
+
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position = BUFFER_SIZE;
+
+        void take(byte[] out) {
+            int length = out.length;
+            if (position + length > BUFFER_SIZE) {
+                random.nextBytes(buffer);
+                position = 0;
+            }
+            System.arraycopy(buffer, position, out, 0, length);
+            // random data must not be handed out twice
+            Arrays.fill(buffer, position, position + length, (byte) 0);
+            position += length;
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.crypto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import chat.dim.protocol.SymmetricKey;
+
+/**
+ *  Bounded LRU cache for parsed symmetric keys
+ *
+ *  <p>
+ *      Keys are indexed by 'algorithm' + 'data', so the same session key
+ *      parsed again can reuse the already-decoded key data.
+ *      The cached key objects hold the first dictionary, so the key factory
+ *      should wrap each caller's dictionary in a new key object around the
+ *      cached key data, instead of returning the cached object itself.
+ *  </p>
+ */
+public class SymmetricKeyCache {
+
+    private final int capacity;
+
+    private final Map<String, SymmetricKey> keys;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    public SymmetricKeyCache(int capacity) {
+        super();
+        assert capacity > 0 : "cache capacity error: " + capacity;
+        this.capacity = capacity;
+        this.keys = new LinkedHashMap<String, SymmetricKey>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SymmetricKey> eldest) {
+                if (size() > SymmetricKeyCache.this.capacity) {
+                    evictionCount += 1;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     *  Build cache index for key info
+     *
+     * @param key - key info
+     * @return null when the key info cannot be shared
+     */
+    protected String getIndex(Map<String, Object> key) {
+        if (key.containsKey("iv") || key.containsKey("IV")) {
+            // key with its own IV (old version), don't share it
+            return null;
+        }
+        Object algorithm = key.get("algorithm");
+        Object data = key.get("data");
+        if (algorithm instanceof String && data instanceof String) {
+            return algorithm + ":" + data;
+        }
+        return null;
+    }
+
+    public SymmetricKey get(Map<String, Object> key) {
+        String index = getIndex(key);
+        if (index == null) {
+            return null;
+        }
+        synchronized (keys) {
+            SymmetricKey cached = keys.get(index);
+            if (cached == null) {
+                missCount += 1;
+            } else {
+                hitCount += 1;
+            }
+            return cached;
+        }
+    }
+
+    public void put(Map<String, Object> key, SymmetricKey value) {
+        String index = getIndex(key);
+        if (index == null || value == null) {
+            return;
+        }
+        synchronized (keys) {
+            keys.put(index, value);
+        }
+    }
+
+    public void clear() {
+        synchronized (keys) {
+            keys.clear();
+        }
+    }
+
+    //
+    //  Statistics
+    //
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        synchronized (keys) {
+            return keys.size();
+        }
+    }
+
+    public long getHitCount() {
+        synchronized (keys) {
+            return hitCount;
+        }
+    }
+
+    public long getMissCount() {
+        synchronized (keys) {
+            return missCount;
+        }
+    }
+
+    public long getEvictionCount() {
+        synchronized (keys) {
+            return evictionCount;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (keys) {
+            return "<" + getClass().getSimpleName() + " size=" + keys.size() + " capacity=" + capacity
+                    + " hits=" + hitCount + " misses=" + missCount + " evictions=" + evictionCount + " />";
+        }
+    }
+
+}
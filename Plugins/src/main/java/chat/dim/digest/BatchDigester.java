@@ -0,0 +1,95 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.digest;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import chat.dim.crypto.BatchExecutor;
+
+/**
+ *  Batch Digester
+ *  <p>
+ *      Digest many small inputs at once, the inputs are processed by
+ *      the batch executor concurrently; the results are returned in the
+ *      same order as the inputs.
+ *  </p>
+ *  <p>
+ *      Each registered digester keeps one engine per thread,
+ *      so the workers reuse their engines for all inputs in a slice.
+ *  </p>
+ */
+public class BatchDigester {
+
+    // inputs fewer than this will be digested on the calling thread
+    public static int MIN_PARALLEL_INPUTS = 16;
+
+    private final MessageDigester digester;
+    private final BatchExecutor executor;
+
+    public BatchDigester(MessageDigester digester, BatchExecutor executor) {
+        super();
+        assert digester != null : "digester should not be empty";
+        this.digester = digester;
+        this.executor = executor;
+    }
+
+    public BatchDigester(MessageDigester digester, Executor executor, int parallelism) {
+        this(digester, new BatchExecutor(executor, parallelism));
+    }
+
+    public BatchDigester(MessageDigester digester, Executor executor) {
+        this(digester, new BatchExecutor(executor));
+    }
+
+    public BatchDigester(MessageDigester digester) {
+        this(digester, BatchExecutor.shared);
+    }
+
+    public MessageDigester getDigester() {
+        return digester;
+    }
+
+    /**
+     *  Digest all inputs
+     *
+     * @param inputs - data list
+     * @return digest list, in input order
+     */
+    public List<byte[]> digest(List<byte[]> inputs) {
+        try {
+            return executor.invokeAll(inputs.size(), MIN_PARALLEL_INPUTS, index -> digester.digest(inputs.get(index)));
+        } catch (BatchExecutor.BatchException e) {
+            // digester doesn't throw checked exceptions
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
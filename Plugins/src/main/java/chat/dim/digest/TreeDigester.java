@@ -0,0 +1,415 @@
+/* license: https://mit-license.org
+ * ==============================================================================
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2026 Albert Moky
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * ==============================================================================
+ */
+package chat.dim.digest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *  Tree Hash (Merkle)
+ *
+ *  <blockquote><pre>
+ *  Split the data into fixed-size chunks, digest all chunks in parallel:
+ *
+ *      leaf = H(0x00 + chunk)
+ *      node = H(0x01 + left + right)
+ *
+ *  an odd node at the end of a level is promoted to the next level as it is;
+ *  empty data has exactly one (empty) chunk.
+ *  </pre></blockquote>
+ *  <p>
+ *      With a JCA algorithm name, each worker hashes the chunks in place with
+ *      its own engine; a MessageDigester only takes whole inputs, so every
+ *      chunk must be copied behind the prefix before digesting.
+ *  </p>
+ */
+public class TreeDigester {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;  // 1 MiB
+
+    // domain separation prefixes
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    // chunks per fork-join task
+    private static final int BATCH_SIZE = 4;
+
+    private final MessageDigester digester;
+    private final ThreadLocal<MessageDigest> engines;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    public TreeDigester(MessageDigester digester, int chunkSize, ForkJoinPool pool) {
+        super();
+        assert digester != null : "digester should not be empty";
+        assert chunkSize > 0 : "chunk size error: " + chunkSize;
+        this.digester = digester;
+        this.engines = null;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    /**
+     *  Create tree digester with JCA digest engines (one engine per thread)
+     *
+     * @param algorithm - digest algorithm name, e.g. "SHA-256"
+     * @param chunkSize - chunk size
+     * @param pool      - fork-join pool
+     * @throws NoSuchAlgorithmException on algorithm not supported
+     */
+    public TreeDigester(String algorithm, int chunkSize, ForkJoinPool pool) throws NoSuchAlgorithmException {
+        super();
+        assert chunkSize > 0 : "chunk size error: " + chunkSize;
+        // check algorithm
+        MessageDigest.getInstance(algorithm);
+        this.digester = null;
+        this.engines = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                // checked above, should not happen
+                throw new IllegalStateException(e);
+            }
+        });
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    public TreeDigester(String algorithm, int chunkSize) throws NoSuchAlgorithmException {
+        this(algorithm, chunkSize, ForkJoinPool.commonPool());
+    }
+
+    public TreeDigester(MessageDigester digester, int chunkSize) {
+        this(digester, chunkSize, ForkJoinPool.commonPool());
+    }
+
+    public TreeDigester(MessageDigester digester) {
+        this(digester, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getChunkCount(long length) {
+        if (length <= 0) {
+            return 1;
+        }
+        long count = (length + chunkSize - 1) / chunkSize;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many chunks: " + count);
+        }
+        return (int) count;
+    }
+
+    //
+    //  Leaves
+    //
+
+    protected byte[] digestLeaf(byte[] buffer, int offset, int length) {
+        if (engines != null) {
+            MessageDigest md = engines.get();
+            md.update(LEAF_PREFIX);
+            md.update(buffer, offset, length);
+            return md.digest();
+        }
+        byte[] leaf = new byte[length + 1];
+        leaf[0] = LEAF_PREFIX;
+        System.arraycopy(buffer, offset, leaf, 1, length);
+        return digester.digest(leaf);
+    }
+
+    protected byte[] digestNode(byte[] left, byte[] right) {
+        if (engines != null) {
+            MessageDigest md = engines.get();
+            md.update(NODE_PREFIX);
+            md.update(left);
+            md.update(right);
+            return md.digest();
+        }
+        byte[] node = new byte[1 + left.length + right.length];
+        node[0] = NODE_PREFIX;
+        System.arraycopy(left, 0, node, 1, left.length);
+        System.arraycopy(right, 0, node, 1 + left.length, right.length);
+        return digester.digest(node);
+    }
+
+    /**
+     *  Digest one chunk as a leaf of the tree
+     *
+     * @param chunk - chunk data
+     * @return leaf hash
+     */
+    public byte[] digestChunk(byte[] chunk) {
+        return digestLeaf(chunk, 0, chunk.length);
+    }
+
+    //
+    //  Tree
+    //
+
+    /**
+     *  Build hash tree for data in memory
+     *
+     * @param data - whole data
+     * @return hash tree
+     */
+    public HashTree digest(byte[] data) {
+        int count = getChunkCount(data.length);
+        byte[][] leaves = new byte[count][];
+        pool.invoke(new LeafTask(0, count, leaves, index -> {
+            int start = index * chunkSize;
+            int length = Math.min(chunkSize, data.length - start);
+            return digestLeaf(data, start, length);
+        }));
+        return new HashTree(chunkSize, data.length, Arrays.asList(leaves), buildRoot(leaves));
+    }
+
+    /**
+     *  Build hash tree for file,
+     *  the chunks are read and digested by the workers concurrently,
+     *  so the file is never loaded into memory as a whole
+     *
+     * @param channel - file channel
+     * @return hash tree
+     * @throws IOException on read error
+     */
+    public HashTree digest(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int count = getChunkCount(size);
+        byte[][] leaves = new byte[count][];
+        LeafTask task = new LeafTask(0, count, leaves, index -> {
+            long start = (long) index * chunkSize;
+            int length = (int) Math.min(chunkSize, size - start);
+            byte[] buffer = new byte[length];
+            readFully(channel, ByteBuffer.wrap(buffer), start);
+            return digestLeaf(buffer, 0, length);
+        });
+        try {
+            pool.invoke(task);
+        } catch (ChunkException e) {
+            throw (IOException) e.getCause();
+        }
+        return new HashTree(chunkSize, size, Arrays.asList(leaves), buildRoot(leaves));
+    }
+
+    public HashTree digest(File file) throws IOException {
+        try (FileInputStream fis = new FileInputStream(file); FileChannel channel = fis.getChannel()) {
+            return digest(channel);
+        }
+    }
+
+    /**
+     *  Calculate root hash from all leaves
+     *
+     * @param leaves - leaf hashes
+     * @return root hash
+     */
+    public byte[] buildRoot(byte[][] leaves) {
+        assert leaves.length > 0 : "leaves should not be empty";
+        byte[][] level = leaves;
+        int count = level.length;
+        while (count > 1) {
+            int next = (count + 1) / 2;
+            byte[][] parents = new byte[next][];
+            for (int i = 0, j = 0; i < count; i += 2, ++j) {
+                if (i + 1 < count) {
+                    parents[j] = digestNode(level[i], level[i + 1]);
+                } else {
+                    // odd node, promote it
+                    parents[j] = level[i];
+                }
+            }
+            level = parents;
+            count = next;
+        }
+        return level[0];
+    }
+
+    //
+    //  Verification
+    //
+
+    /**
+     *  Check whether the leaves (received separately) match the trusted root
+     *
+     * @param leaves - leaf hashes
+     * @param root   - trusted root hash
+     * @return true on matched
+     */
+    public boolean verifyLeaves(List<byte[]> leaves, byte[] root) {
+        if (leaves == null || leaves.isEmpty()) {
+            return false;
+        }
+        byte[] res = buildRoot(leaves.toArray(new byte[0][]));
+        return Arrays.equals(res, root);
+    }
+
+    /**
+     *  Check one chunk against the (verified) hash tree,
+     *  so a range of the data can be verified as soon as it arrives
+     *
+     * @param tree  - hash tree
+     * @param index - chunk index
+     * @param chunk - chunk data
+     * @return true on matched
+     */
+    public boolean verifyChunk(HashTree tree, int index, byte[] chunk) {
+        if (index < 0 || index >= tree.getLeafCount()) {
+            return false;
+        } else if (chunk.length != tree.getChunkLength(index)) {
+            return false;
+        }
+        return Arrays.equals(digestChunk(chunk), tree.getLeaf(index));
+    }
+
+    //
+    //  Fork-Join
+    //
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int cnt = channel.read(buffer, position);
+            if (cnt < 0) {
+                throw new IOException("unexpected end of file at " + position);
+            }
+            position += cnt;
+        }
+    }
+
+    private static class ChunkException extends RuntimeException {
+        ChunkException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    private interface LeafSource {
+        byte[] digestAt(int index) throws IOException;
+    }
+
+    private static class LeafTask extends RecursiveAction {
+
+        private final int start;
+        private final int end;
+        private final byte[][] leaves;
+        private final LeafSource source;
+
+        LeafTask(int start, int end, byte[][] leaves, LeafSource source) {
+            super();
+            this.start = start;
+            this.end = end;
+            this.leaves = leaves;
+            this.source = source;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= BATCH_SIZE) {
+                try {
+                    for (int index = start; index < end; ++index) {
+                        leaves[index] = source.digestAt(index);
+                    }
+                } catch (IOException e) {
+                    throw new ChunkException(e);
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new LeafTask(start, middle, leaves, source),
+                    new LeafTask(middle, end, leaves, source));
+        }
+    }
+
+    /**
+     *  Hash Tree
+     *  <p>
+     *      Root hash with all leaf (chunk) hashes, the receiver can check
+     *      the leaves with a trusted root first, and then verify every
+     *      chunk incrementally while downloading.
+     *  </p>
+     */
+    public static final class HashTree {
+
+        private final int chunkSize;
+        private final long length;
+        private final List<byte[]> leaves;
+        private final byte[] root;
+
+        public HashTree(int chunkSize, long length, List<byte[]> leaves, byte[] root) {
+            super();
+            this.chunkSize = chunkSize;
+            this.length = length;
+            this.leaves = leaves;
+            this.root = root;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        /**
+         *  Get total length of the data
+         */
+        public long getLength() {
+            return length;
+        }
+
+        public byte[] getRoot() {
+            return root;
+        }
+
+        public int getLeafCount() {
+            return leaves.size();
+        }
+
+        public byte[] getLeaf(int index) {
+            return leaves.get(index);
+        }
+
+        public List<byte[]> getLeaves() {
+            return new ArrayList<>(leaves);
+        }
+
+        /**
+         *  Get data length of the chunk at index
+         */
+        public int getChunkLength(int index) {
+            long start = (long) index * chunkSize;
+            return (int) Math.max(0, Math.min(chunkSize, length - start));
+        }
+    }
+
+}
@@ -25,11 +25,16 @@
  */
 package chat.dim.plugins;
 
+import java.util.HashMap;
 import java.util.Map;
 
+import chat.dim.crypto.AESCTRKey;
+import chat.dim.crypto.AESGCMKey;
 import chat.dim.crypto.AESKey;
 import chat.dim.crypto.BaseSymmetricKey;
+import chat.dim.crypto.ChaCha20Poly1305Key;
 import chat.dim.crypto.PlainKey;
+import chat.dim.crypto.SymmetricKeyCache;
 import chat.dim.protocol.SymmetricAlgorithms;
 import chat.dim.protocol.SymmetricKey;
 
@@ -39,6 +44,16 @@ public interface CryptoPlugins {
 
     // protected
     default void registerAESKeyFactory() {
+        registerAESKeyFactory(null);
+    }
+
+    /**
+     *  Register AES key factory
+     *
+     * @param cache - cache for parsed keys, null to create new key every time
+     */
+    // protected
+    default void registerAESKeyFactory(SymmetricKeyCache cache) {
 
         SymmetricKey.Factory aes = new SymmetricKey.Factory() {
 
@@ -56,7 +71,19 @@ public interface CryptoPlugins {
                     assert false : "AES key error: " + key;
                     return null;
                 }
-                return new AESKey(key);
+                if (cache == null) {
+                    return new AESKey(key);
+                }
+                SymmetricKey cached = cache.get(key);
+                if (cached instanceof AESKey) {
+                    // new key object for this dictionary, sharing the decoded key data
+                    return new AESKey(key, (AESKey) cached);
+                }
+                AESKey aesKey = new AESKey(key);
+                // parse key data before sharing it
+                aesKey.getData();
+                cache.put(key, new AESKey(new HashMap<>(key), aesKey));
+                return aesKey;
             }
         };
         SymmetricKey.setFactory(SymmetricAlgorithms.AES, aes);
@@ -65,6 +92,89 @@ public interface CryptoPlugins {
 
     }
 
+    // protected
+    default void registerAESGCMKeyFactory() {
+
+        SymmetricKey.Factory gcm = new SymmetricKey.Factory() {
+
+            @Override
+            public SymmetricKey generateSymmetricKey() {
+                return AESGCMKey.newKey();
+            }
+
+            @Override
+            public SymmetricKey parseSymmetricKey(Map<String, Object> key) {
+                // check 'data', 'algorithm'
+                if (key.get("data") == null || key.get("algorithm") == null) {
+                    // key.data should not be empty
+                    // key.algorithm should not be empty
+                    assert false : "AES-GCM key error: " + key;
+                    return null;
+                }
+                return new AESGCMKey(key);
+            }
+        };
+        SymmetricKey.setFactory(AESGCMKey.AES_GCM, gcm);
+        SymmetricKey.setFactory(AESGCMKey.AES_GCM_NO_PADDING, gcm);
+
+    }
+
+    // protected
+    default void registerChaCha20Poly1305KeyFactory() {
+
+        if (!ChaCha20Poly1305Key.isSupported()) {
+            // ChaCha20-Poly1305 requires Java 11+ / Android 9+
+            return;
+        }
+        SymmetricKey.setFactory(ChaCha20Poly1305Key.CHACHA20_POLY1305, new SymmetricKey.Factory() {
+
+            @Override
+            public SymmetricKey generateSymmetricKey() {
+                return ChaCha20Poly1305Key.newKey();
+            }
+
+            @Override
+            public SymmetricKey parseSymmetricKey(Map<String, Object> key) {
+                // check 'data', 'algorithm'
+                if (key.get("data") == null || key.get("algorithm") == null) {
+                    // key.data should not be empty
+                    // key.algorithm should not be empty
+                    assert false : "ChaCha20-Poly1305 key error: " + key;
+                    return null;
+                }
+                return new ChaCha20Poly1305Key(key);
+            }
+        });
+
+    }
+
+    // protected
+    default void registerAESCTRKeyFactory() {
+
+        SymmetricKey.Factory ctr = new SymmetricKey.Factory() {
+
+            @Override
+            public SymmetricKey generateSymmetricKey() {
+                return AESCTRKey.newKey();
+            }
+
+            @Override
+            public SymmetricKey parseSymmetricKey(Map<String, Object> key) {
+                // check 'data', 'algorithm'
+                if (key.get("data") == null || key.get("algorithm") == null) {
+                    // key.data should not be empty
+                    // key.algorithm should not be empty
+                    assert false : "AES-CTR key error: " + key;
+                    return null;
+                }
+                return new AESCTRKey(key);
+            }
+        };
+        SymmetricKey.setFactory(AESCTRKey.AES_CTR, ctr);
+        SymmetricKey.setFactory(AESCTRKey.AES_CTR_NO_PADDING, ctr);
+
+    }
+
     // protected
     default void registerPlainKeyFactory() {
 
@@ -41,14 +41,20 @@ public interface DigestPlugins {
         // SHA256
         SHA256.digester = new MessageDigester() {
 
+            // one engine per thread
+            private final ThreadLocal<MessageDigest> engines = new ThreadLocal<>();
+
             @Override
             public byte[] digest(byte[] data) {
-                MessageDigest md;
-                try {
-                    md = MessageDigest.getInstance("SHA-256");
-                } catch (NoSuchAlgorithmException e) {
-                    e.printStackTrace();
-                    return null;
+                MessageDigest md = engines.get();
+                if (md == null) {
+                    try {
+                        md = MessageDigest.getInstance("SHA-256");
+                    } catch (NoSuchAlgorithmException e) {
+                        e.printStackTrace();
+                        return null;
+                    }
+                    engines.set(md);
                 }
                 md.reset();
                 md.update(data);
@@ -83,6 +83,13 @@ public class PluginLoader implements CoderPlugins, TransportablePlugins, DigestP
         registerAESKeyFactory();
         registerPlainKeyFactory();
 
+        // AEAD keys
+        registerAESGCMKeyFactory();
+        registerChaCha20Poly1305KeyFactory();
+
+        // Random access
+        registerAESCTRKeyFactory();
+
         /*/
         // Asymmetric keys
         registerRSAKeyFactories();
@@ -2,14 +2,39 @@
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import chat.dim.compat.CompatibleMetaFactory;
+import chat.dim.crypto.AESCTRKey;
+import chat.dim.crypto.AESGCMKey;
+import chat.dim.crypto.AESKey;
+import chat.dim.crypto.BatchExecutor;
+import chat.dim.crypto.ChaCha20Poly1305Key;
+import chat.dim.crypto.ChunkedCipher;
+import chat.dim.crypto.SymmetricKeyCache;
+import chat.dim.digest.BatchDigester;
 import chat.dim.digest.SHA256;
+import chat.dim.digest.TreeDigester;
 import chat.dim.format.Base58;
 import chat.dim.format.Base64;
 import chat.dim.format.Hex;
 import chat.dim.format.UTF8;
 import chat.dim.protocol.MetaType;
 import chat.dim.protocol.Meta;
+import chat.dim.protocol.SymmetricKey;
 
 public class CryptoTest {
 
@@ -32,6 +57,259 @@ public class CryptoTest {
         Assert.assertEquals(exp, res);
     }
 
+    @Test
+    public void testBatchExecutor() {
+        BatchExecutor executor = new BatchExecutor();
+        List<BatchExecutor.Result<Integer>> results = executor.run(100, index -> {
+            if (index == 7) {
+                throw new IOException("bad item: " + index);
+            }
+            return index * 2;
+        });
+        Assert.assertEquals(100, results.size());
+        for (int i = 0; i < results.size(); ++i) {
+            if (i == 7) {
+                Assert.assertFalse(results.get(i).isSuccess());
+                Assert.assertTrue(results.get(i).getError() instanceof IOException);
+            } else {
+                Assert.assertEquals(Integer.valueOf(i * 2), results.get(i).getValue());
+            }
+        }
+
+        // stop at the first failed item
+        try {
+            executor.invokeAll(100, index -> {
+                if (index == 42) {
+                    throw new IOException("bad item: " + index);
+                }
+                return index;
+            });
+            Assert.fail("batch should be failed");
+        } catch (BatchExecutor.BatchException e) {
+            Assert.assertEquals(42, e.getIndex());
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testBatchDigest() {
+        List<byte[]> inputs = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            inputs.add(UTF8.encode("moky-" + i));
+        }
+        BatchDigester digester = new BatchDigester(SHA256.digester);
+        List<byte[]> results = digester.digest(inputs);
+        Assert.assertEquals(inputs.size(), results.size());
+        for (int i = 0; i < inputs.size(); ++i) {
+            Assert.assertArrayEquals(SHA256.digest(inputs.get(i)), results.get(i));
+        }
+    }
+
+    @Test
+    public void testTreeHash() {
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) i;
+        }
+        TreeDigester digester = new TreeDigester(SHA256.digester, 1024);
+        TreeDigester.HashTree tree = digester.digest(data);
+        Log.info("tree root: " + Hex.encode(tree.getRoot()) + ", leaves: " + tree.getLeafCount());
+        Assert.assertEquals(10, tree.getLeafCount());
+        Assert.assertTrue(digester.verifyLeaves(tree.getLeaves(), tree.getRoot()));
+
+        byte[] chunk = Arrays.copyOfRange(data, 9 * 1024, data.length);
+        Assert.assertTrue(digester.verifyChunk(tree, 9, chunk));
+        Assert.assertFalse(digester.verifyChunk(tree, 8, chunk));
+
+        // single chunk: root = sha256(0x00 + data)
+        byte[] leaf = new byte[5];
+        System.arraycopy(UTF8.encode("moky"), 0, leaf, 1, 4);
+        tree = digester.digest(UTF8.encode("moky"));
+        Assert.assertArrayEquals(SHA256.digest(leaf), tree.getRoot());
+    }
+
+    @Test
+    public void testTreeHashFile() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[10 * 1024 + 7];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) (i * 13);
+        }
+        File file = File.createTempFile("tree", ".bin");
+        file.deleteOnExit();
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(data);
+        }
+        TreeDigester digester = new TreeDigester(SHA256.digester, 1024);
+        TreeDigester.HashTree tree = digester.digest(data);
+        TreeDigester.HashTree fileTree = digester.digest(file);
+        Assert.assertEquals(data.length, fileTree.getLength());
+        Assert.assertEquals(tree.getLeafCount(), fileTree.getLeafCount());
+        for (int i = 0; i < tree.getLeafCount(); ++i) {
+            Assert.assertArrayEquals(tree.getLeaf(i), fileTree.getLeaf(i));
+        }
+        Assert.assertArrayEquals(tree.getRoot(), fileTree.getRoot());
+
+        // JCA engines hash the chunks in place, same tree
+        TreeDigester engine = new TreeDigester("SHA-256", 1024);
+        Assert.assertArrayEquals(tree.getRoot(), engine.digest(data).getRoot());
+        Assert.assertArrayEquals(tree.getRoot(), engine.digest(file).getRoot());
+    }
+
+    private void checkAEAD(SymmetricKey key) {
+        Log.info("key: " + key);
+        Map<String, Object> extra = new HashMap<>();
+        byte[] plaintext = UTF8.encode("moky");
+        byte[] ciphertext = key.encrypt(plaintext, extra);
+        Log.info("encrypt(moky) = " + Hex.encode(ciphertext) + ", extra: " + extra);
+        Assert.assertArrayEquals(plaintext, key.decrypt(ciphertext, extra));
+
+        // parse again
+        SymmetricKey key2 = SymmetricKey.parse(key.toMap());
+        Assert.assertArrayEquals(plaintext, key2.decrypt(ciphertext, extra));
+
+        // tamper
+        ciphertext[0] ^= 1;
+        Assert.assertNull(key.decrypt(ciphertext, extra));
+    }
+
+    @Test
+    public void testKeyEquals() {
+        Map<String, Object> info = new HashMap<>();
+        info.put("algorithm", "AES");
+        info.put("data", "C2+xGizLL1G1+z9QLPYNdp/bPP/seDvNw45SXPAvQqk=");
+        SymmetricKey key1 = SymmetricKey.parse(info);
+        info = new HashMap<>(info);
+        info.put("algorithm", "AES/CBC/PKCS7Padding");
+        SymmetricKey key2 = SymmetricKey.parse(info);
+        Assert.assertEquals(key1, key2);
+        Assert.assertEquals(key1.hashCode(), key2.hashCode());
+
+        SymmetricKey key3 = SymmetricKey.generate("AES");
+        Assert.assertNotEquals(key1, key3);
+
+        // same data, different algorithm
+        info = new HashMap<>(info);
+        info.put("algorithm", AESGCMKey.AES_GCM);
+        SymmetricKey key4 = SymmetricKey.parse(info);
+        Assert.assertNotEquals(key1, key4);
+
+        // a plain map never equals a key, so equal objects share hash codes
+        Assert.assertNotEquals(key1, key1.toMap());
+        Assert.assertTrue(key1.matchEncryptKey(key2));
+    }
+
+    @Test
+    public void testKeyCache() {
+        SymmetricKeyCache cache = new SymmetricKeyCache(2);
+        SymmetricKey key1 = SymmetricKey.generate("AES");
+        SymmetricKey key2 = SymmetricKey.generate("AES");
+        SymmetricKey key3 = SymmetricKey.generate("AES");
+        Assert.assertNull(cache.get(key1.toMap()));
+        cache.put(key1.toMap(), key1);
+        cache.put(key2.toMap(), key2);
+        Assert.assertSame(key1, cache.get(new HashMap<>(key1.toMap())));
+        // key2 is the eldest now
+        cache.put(key3.toMap(), key3);
+        Assert.assertNull(cache.get(key2.toMap()));
+        Assert.assertSame(key3, cache.get(key3.toMap()));
+        Log.info("key cache: " + cache);
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(1, cache.getEvictionCount());
+
+        // new key object for another dictionary, sharing the decoded key data
+        Map<String, Object> info = new HashMap<>(key3.toMap());
+        info.put("extra", "moky");
+        AESKey copy = new AESKey(info, (AESKey) cache.get(info));
+        Assert.assertEquals("moky", copy.get("extra"));
+        Assert.assertSame(key3.getData(), copy.getData());
+        Assert.assertEquals(key3, copy);
+    }
+
+    @Test
+    public void testAESCTR() throws IOException {
+        AESCTRKey key = (AESCTRKey) SymmetricKey.generate(AESCTRKey.AES_CTR);
+        byte[] plaintext = new byte[100 * 1024 + 5];
+        for (int i = 0; i < plaintext.length; ++i) {
+            plaintext[i] = (byte) (i * 7);
+        }
+        Map<String, Object> extra = new HashMap<>();
+        byte[] ciphertext = key.encrypt(plaintext, extra);
+        Assert.assertEquals(plaintext.length, ciphertext.length);
+        Assert.assertArrayEquals(plaintext, key.decrypt(ciphertext, extra));
+
+        // segment
+        int offset = 12345, length = 54321;
+        byte[] segment = Arrays.copyOfRange(ciphertext, offset, offset + length);
+        Assert.assertArrayEquals(Arrays.copyOfRange(plaintext, offset, offset + length),
+                key.decrypt(segment, offset, extra));
+
+        // file range
+        File file = File.createTempFile("aes-ctr", ".bin");
+        file.deleteOnExit();
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(ciphertext);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        offset = 70001;
+        length = 20000;
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            long size = key.decrypt(channel, offset, length, Channels.newChannel(out), extra);
+            Assert.assertEquals(length, size);
+        }
+        Assert.assertArrayEquals(Arrays.copyOfRange(plaintext, offset, offset + length), out.toByteArray());
+    }
+
+    @Test
+    public void testChunkedCipher() throws IOException {
+        ChunkedCipher cipher = new ChunkedCipher(AESGCMKey.newKey(), 4096);
+        byte[] plaintext = new byte[100 * 1024 + 3];
+        for (int i = 0; i < plaintext.length; ++i) {
+            plaintext[i] = (byte) (i * 31);
+        }
+        byte[] container = cipher.encrypt(plaintext);
+        Assert.assertEquals(ChunkedCipher.getContainerLength(plaintext.length, 4096), container.length);
+        Assert.assertArrayEquals(plaintext, cipher.decrypt(container));
+
+        // corrupted chunk
+        container[ChunkedCipher.HEADER_SIZE + 5 * (4096 + ChunkedCipher.TAG_SIZE)] ^= 1;
+        Assert.assertNull(cipher.decrypt(container));
+        container[ChunkedCipher.HEADER_SIZE + 5 * (4096 + ChunkedCipher.TAG_SIZE)] ^= 1;
+
+        // truncated
+        Assert.assertNull(cipher.decrypt(Arrays.copyOf(container, container.length - 100)));
+
+        // corrupted file, the output should be dropped
+        File input = File.createTempFile("chunked", ".bin");
+        File output = File.createTempFile("chunked", ".out");
+        input.deleteOnExit();
+        output.deleteOnExit();
+        container[container.length - 1] ^= 1;
+        try (FileOutputStream fos = new FileOutputStream(input)) {
+            fos.write(container);
+        }
+        container[container.length - 1] ^= 1;
+        try (FileChannel in = new RandomAccessFile(input, "r").getChannel();
+             FileChannel out = new RandomAccessFile(output, "rw").getChannel()) {
+            Assert.assertEquals(-1, cipher.decrypt(in, out));
+            Assert.assertEquals(0, out.size());
+        }
+
+        // chunk size / total length overflow in header
+        ByteBuffer.wrap(container).putInt(8, Integer.MAX_VALUE - 4);
+        Assert.assertNull(cipher.decrypt(container));
+        ByteBuffer.wrap(container).putInt(8, 4096).putLong(12, Long.MAX_VALUE - 10);
+        Assert.assertNull(cipher.decrypt(container));
+    }
+
+    @Test
+    public void testAEAD() {
+        checkAEAD(SymmetricKey.generate(AESGCMKey.AES_GCM));
+        if (ChaCha20Poly1305Key.isSupported()) {
+            checkAEAD(SymmetricKey.generate(ChaCha20Poly1305Key.CHACHA20_POLY1305));
+        }
+    }
+
     @Test
     public void testEncode() {
         String string = "moky";